@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+@Configuration
+public class JacksonConfig {
+    public static final String SPARSE_FIELDS_FILTER = "sparseFields";
+
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer sparseFieldsCustomizer() {
+
+        return builder -> builder
+                .filters(new SimpleFilterProvider().setFailOnUnknownId(false))
+                .mixIn(Film.class, SparseFieldsMixIn.class)
+                .mixIn(User.class, SparseFieldsMixIn.class);
+    }
+
+    @JsonFilter(SPARSE_FIELDS_FILTER)
+    interface SparseFieldsMixIn {
+    }
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.Duration;
+
+@Configuration
+public class StorageCacheConfig {
+
+
+    @Bean
+    public Cache<Long, Film> filmCache(@Value("${filmorate.cache.films.maximum-size:10000}") long maximumSize,
+                                       @Value("${filmorate.cache.films.expire-after-write:10m}") Duration expireAfterWrite,
+                                       MeterRegistry meterRegistry) {
+
+        return CaffeineCacheMetrics.monitor(meterRegistry,
+                buildCache(maximumSize, expireAfterWrite),
+                "films");
+    }
+
+    @Bean
+    public Cache<Long, User> userCache(@Value("${filmorate.cache.users.maximum-size:10000}") long maximumSize,
+                                       @Value("${filmorate.cache.users.expire-after-write:10m}") Duration expireAfterWrite,
+                                       MeterRegistry meterRegistry) {
+
+        return CaffeineCacheMetrics.monitor(meterRegistry,
+                buildCache(maximumSize, expireAfterWrite),
+                "users");
+    }
+
+    private static <V> Cache<Long, V> buildCache(long maximumSize, Duration expireAfterWrite) {
+
+        return Caffeine
+                .newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+}
@@ -1,15 +1,29 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import ru.yandex.practicum.filmorate.exception.BadRequestException;
+import ru.yandex.practicum.filmorate.model.EdgeImportResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmImportResult;
+import ru.yandex.practicum.filmorate.model.FilmLikeEdge;
+import ru.yandex.practicum.filmorate.model.FilmPatch;
+import ru.yandex.practicum.filmorate.model.FilmWithLikes;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 
 
 @RestController
@@ -17,6 +31,7 @@ import java.util.Collection;
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 public class FilmController {
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
 
     @PostMapping
@@ -28,10 +43,46 @@ public class FilmController {
         return filmService.createFilm(film);
     }
 
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @ResponseStatus(HttpStatus.OK)
+    public FilmImportResult importFilms(InputStream body) throws IOException {
+        try (MappingIterator<Film> films = objectMapper.readerFor(Film.class).readValues(body)) {
+            return filmService.importFilms(JsonRecords.of(films));
+        }
+    }
+
+    @PostMapping(value = "/likes/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @ResponseStatus(HttpStatus.OK)
+    public EdgeImportResult importLikes(InputStream body) throws IOException {
+        try (MappingIterator<FilmLikeEdge> likes = objectMapper.readerFor(FilmLikeEdge.class).readValues(body)) {
+            return filmService.importLikes(JsonRecords.of(likes));
+        }
+    }
+
     @GetMapping("/{filmId}")
     @ResponseStatus(HttpStatus.OK)
-    public Film getFilmById(@PathVariable long filmId) {
-        return filmService.getFilmById(filmId);
+    @SparseFieldsSupported
+    public Film getFilmById(
+            @PathVariable long filmId,
+            @RequestParam(value = SparseFields.PARAM, required = false) String fields) {
+        final Set<FilmField> filmFields = SparseFields.parse(fields, FilmField.class, FilmField::fromProperty);
+        return filmService.getFilmById(filmId, filmFields);    //?fields=id,name
+    }
+
+    @GetMapping(value = "/{filmId}", params = "withLikes=true")
+    @ResponseStatus(HttpStatus.OK)
+    public FilmWithLikes getFilmWithLikesById(@PathVariable long filmId) {
+        return filmService.getFilmWithLikesById(filmId);                   //?withLikes=true
+    }
+
+    @GetMapping("/{filmId}/likes")
+    public ResponseEntity<List<Long>> getFilmLikes(
+            @PathVariable long filmId,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        final int pageLimit = limit == null ? PageCursor.DEFAULT_LIMIT : limit;
+        return PageCursor.page(
+                filmService.getFilmLikePage(filmId, PageCursor.decode(after), pageLimit), pageLimit, Long::longValue);
     }
 
     @PutMapping
@@ -43,10 +94,56 @@ public class FilmController {
         return filmService.updateFilm(film);
     }
 
-    @GetMapping
+    @PatchMapping("/{filmId}")
     @ResponseStatus(HttpStatus.OK)
-    public Collection<Film> getAllFilm() {
-        return filmService.getAllFilm();
+    public Film patchFilm(@PathVariable long filmId, @RequestBody FilmPatch filmPatch) {
+        return filmService.patchFilm(filmId, filmPatch);
+    }
+
+    @GetMapping
+    @SparseFieldsSupported
+    public ResponseEntity<? extends Collection<Film>> getAllFilm(
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = SparseFields.PARAM, required = false) String fields) {
+        final Set<FilmField> filmFields = SparseFields.parse(fields, FilmField.class, FilmField::fromProperty);
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(filmService.getAllFilm(filmFields));    //?fields=id,name
+        }
+        final int pageLimit = limit == null ? PageCursor.DEFAULT_LIMIT : limit;
+        return PageCursor.page(
+                filmService.getFilmPage(PageCursor.decode(after), pageLimit, filmFields), pageLimit, Film::getId);   //?after={cursor}&limit={limit}
+    }
+
+    @GetMapping(params = "withLikes=true")
+    @SparseFieldsSupported
+    public ResponseEntity<List<FilmWithLikes>> getAllFilmWithLikes(
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = SparseFields.PARAM, required = false) String fields) {
+        final Set<FilmField> filmFields = SparseFields.parse(fields, FilmField.class, FilmField::fromProperty);
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(filmService.withLikes(filmService.getAllFilm(filmFields)));
+        }
+        final int pageLimit = limit == null ? PageCursor.DEFAULT_LIMIT : limit;
+        return PageCursor.page(
+                filmService.withLikes(filmService.getFilmPage(PageCursor.decode(after), pageLimit, filmFields)),
+                pageLimit, film -> film.getFilm().getId());
+    }
+
+    @GetMapping(params = MultiGet.PARAM)
+    public ResponseEntity<List<Film>> getFilmsByIds(@RequestParam(MultiGet.PARAM) List<Long> ids) {
+        return MultiGet.of(ids, filmService.getFilmsByIds(ids), Film::getId);     //?ids=1,2,3
+    }
+
+    @GetMapping(params = {MultiGet.PARAM, "withLikes=true"})
+    public ResponseEntity<List<FilmWithLikes>> getFilmsWithLikesByIds(@RequestParam(MultiGet.PARAM) List<Long> ids) {
+        return MultiGet.of(ids, filmService.withLikes(filmService.getFilmsByIds(ids)), film -> film.getFilm().getId());
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportAllFilm() {
+        return NdjsonResponse.of(objectMapper, filmService::exportAllFilm);
     }
 
     @DeleteMapping
@@ -78,5 +175,12 @@ public class FilmController {
         return filmService.getFilmByPopular(count);                         //?count={count}
     }
 
+    @GetMapping(value = "/popular", params = "withLikes=true")
+    @ResponseStatus(HttpStatus.OK)
+    public List<FilmWithLikes> getFilmWithLikesByPopular(
+            @RequestParam(value = "count", defaultValue = "10", required = false) int count) {
+        return filmService.withLikes(filmService.getFilmByPopular(count));
+    }
+
 
 }
\ No newline at end of file
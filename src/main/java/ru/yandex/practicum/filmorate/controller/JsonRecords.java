@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import ru.yandex.practicum.filmorate.exception.BadRequestException;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+final class JsonRecords {
+
+    private JsonRecords() {
+    }
+
+    static <T> Iterator<T> of(MappingIterator<T> records) {
+
+        return new Iterator<>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    return records.hasNextValue();
+                } catch (IOException e) {
+                    throw invalidRecord(e);
+                }
+            }
+
+            @Override
+            public T next() {
+
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                try {
+                    final T record = records.nextValue();
+                    index++;
+                    return record;
+                } catch (IOException e) {
+                    throw invalidRecord(e);
+                }
+            }
+
+            private BadRequestException invalidRecord(IOException e) {
+                return new BadRequestException("Некорректная запись с индексом => " + index + " => "
+                        + e.getMessage());
+            }
+        };
+    }
+}
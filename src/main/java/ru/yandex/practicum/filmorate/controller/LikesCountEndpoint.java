@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.util.Map;
+
+@Component
+@Endpoint(id = "likescount")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class LikesCountEndpoint {
+    private final FilmService filmService;
+
+    @WriteOperation
+    public Map<String, Integer> recalculateLikesCount() {
+        return Map.of("repaired", filmService.recalculateLikesCount());
+    }
+}
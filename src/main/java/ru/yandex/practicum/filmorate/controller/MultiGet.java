@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
+
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.function.ToLongFunction;
+
+final class MultiGet {
+    static final String PARAM = "ids";
+    static final String MISSING_IDS_HEADER = "X-Missing-Ids";
+
+    private MultiGet() {
+    }
+
+    static <T> ResponseEntity<List<T>> of(List<Long> ids, List<T> found, ToLongFunction<T> idExtractor) {
+
+        final LongHashSet foundIds = new LongHashSet(found.size());
+
+        found.forEach(item -> foundIds.add(idExtractor.applyAsLong(item)));
+
+        final StringJoiner missingIds = new StringJoiner(",");
+
+        ids.stream()
+                .distinct()
+                .filter(id -> !foundIds.contains(id.longValue()))
+                .forEach(id -> missingIds.add(String.valueOf(id)));
+
+        if (missingIds.length() == 0) {
+            return ResponseEntity.ok(found);
+        }
+
+        return ResponseEntity
+                .ok()
+                .header(MISSING_IDS_HEADER, missingIds.toString())
+                .body(found);
+    }
+}
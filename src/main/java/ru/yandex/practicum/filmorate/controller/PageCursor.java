@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.filmorate.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+final class PageCursor {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int DEFAULT_LIMIT = 100;
+    private static final String PREFIX = "id:";
+
+    private PageCursor() {
+    }
+
+    static long decode(String cursor) throws BadRequestException {
+
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+
+        try {
+            final String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+
+            if (!decoded.startsWith(PREFIX)) {
+                throw new IllegalArgumentException(decoded);
+            }
+
+            return Long.parseLong(decoded.substring(PREFIX.length()));
+
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Некорректный курсор страницы => " + cursor);
+        }
+    }
+
+    static String encode(long id) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString((PREFIX + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static <T> ResponseEntity<List<T>> page(List<T> content, int limit, ToLongFunction<T> idExtractor) {
+
+        if (content.isEmpty() || content.size() < limit) {
+            return ResponseEntity.ok(content);
+        }
+
+        return ResponseEntity
+                .ok()
+                .header(NEXT_CURSOR_HEADER, encode(idExtractor.applyAsLong(content.get(content.size() - 1))))
+                .body(content);
+    }
+}
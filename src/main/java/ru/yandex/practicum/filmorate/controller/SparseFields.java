@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import ru.yandex.practicum.filmorate.exception.BadRequestException;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toSet;
+
+final class SparseFields {
+    static final String PARAM = "fields";
+
+    private SparseFields() {
+    }
+
+    static <E extends Enum<E>> Set<E> parse(String fields, Class<E> type, Function<String, E> fromProperty)
+            throws BadRequestException {
+
+        if (fields == null || fields.isBlank()) {
+            return EnumSet.allOf(type);
+        }
+
+        final Set<E> parsed = EnumSet.noneOf(type);
+
+        try {
+            properties(fields).forEach(property -> parsed.add(fromProperty.apply(property)));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+
+        return parsed;
+    }
+
+    static Set<String> properties(String fields) {
+        return Arrays
+                .stream(fields.split(","))
+                .map(String::trim)
+                .filter(property -> !property.isEmpty())
+                .collect(toSet());
+    }
+}
@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+
+import static ru.yandex.practicum.filmorate.config.JacksonConfig.SPARSE_FIELDS_FILTER;
+
+@ControllerAdvice("ru.yandex.practicum.filmorate.controller")
+public class SparseFieldsAdvice extends AbstractMappingJacksonResponseBodyAdvice {
+
+    @Override
+    protected void beforeBodyWriteInternal(MappingJacksonValue bodyContainer,
+                                           MediaType contentType,
+                                           MethodParameter returnType,
+                                           ServerHttpRequest request,
+                                           ServerHttpResponse response) {
+
+        if (!returnType.hasMethodAnnotation(SparseFieldsSupported.class)
+                || !(request instanceof ServletServerHttpRequest)) {
+            return;
+        }
+
+        final String fields = ((ServletServerHttpRequest) request).getServletRequest().getParameter(SparseFields.PARAM);
+
+        if (fields == null || fields.isBlank()) {
+            return;
+        }
+
+        bodyContainer.setFilters(new SimpleFilterProvider()
+                .addFilter(SPARSE_FIELDS_FILTER,
+                        SimpleBeanPropertyFilter.filterOutAllExcept(SparseFields.properties(fields))));
+    }
+}
@@ -1,16 +1,27 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import ru.yandex.practicum.filmorate.exception.BadRequestException;
+import ru.yandex.practicum.filmorate.model.EdgeImportResult;
+import ru.yandex.practicum.filmorate.model.FriendshipEdge;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 
 
 @RestController
@@ -18,6 +29,7 @@ import java.util.Collection;
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 public class UserController {
     private final UserService userService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -28,6 +40,14 @@ public class UserController {
         return userService.createUser(user);
     }
 
+    @PostMapping(value = "/friends/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @ResponseStatus(HttpStatus.OK)
+    public EdgeImportResult importFriendships(InputStream body) throws IOException {
+        try (MappingIterator<FriendshipEdge> edges = objectMapper.readerFor(FriendshipEdge.class).readValues(body)) {
+            return userService.importFriendships(JsonRecords.of(edges));
+        }
+    }
+
     @PutMapping
     @ResponseStatus(HttpStatus.OK)
     public User updateUser(@RequestBody User user) {
@@ -38,15 +58,38 @@ public class UserController {
     }
 
     @GetMapping
-    @ResponseStatus(HttpStatus.OK)
-    public Collection<User> allUser() {
-        return userService.getAllUser();
+    @SparseFieldsSupported
+    public ResponseEntity<? extends Collection<User>> allUser(
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = SparseFields.PARAM, required = false) String fields) {
+        final Set<UserField> userFields = SparseFields.parse(fields, UserField.class, UserField::fromProperty);
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(userService.getAllUser(userFields));    //?fields=id,login
+        }
+        final int pageLimit = limit == null ? PageCursor.DEFAULT_LIMIT : limit;
+        return PageCursor.page(
+                userService.getUserPage(PageCursor.decode(after), pageLimit, userFields), pageLimit, User::getId);   //?after={cursor}&limit={limit}
+    }
+
+    @GetMapping(params = MultiGet.PARAM)
+    public ResponseEntity<List<User>> getUsersByIds(@RequestParam(MultiGet.PARAM) List<Long> ids) {
+        return MultiGet.of(ids, userService.getUsersByIds(ids), User::getId);     //?ids=1,2,3
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportAllUser() {
+        return NdjsonResponse.of(objectMapper, userService::exportAllUser);
     }
 
     @GetMapping("/{userId}")
     @ResponseStatus(HttpStatus.OK)
-    public User getUserById(@PathVariable long userId) {
-        return userService.getUserById(userId);
+    @SparseFieldsSupported
+    public User getUserById(
+            @PathVariable long userId,
+            @RequestParam(value = SparseFields.PARAM, required = false) String fields) {
+        final Set<UserField> userFields = SparseFields.parse(fields, UserField.class, UserField::fromProperty);
+        return userService.getUserById(userId, userFields);    //?fields=id,login
     }
 
     @DeleteMapping
@@ -72,9 +115,16 @@ public class UserController {
     }
 
     @GetMapping("/{userId}/friends")
-    @ResponseStatus(HttpStatus.OK)
-    public Collection<User> getFriends(@PathVariable long userId) {
-        return userService.getAllFriendsByUser(userId);
+    public ResponseEntity<? extends Collection<User>> getFriends(
+            @PathVariable long userId,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(userService.getAllFriendsByUser(userId));
+        }
+        final int pageLimit = limit == null ? PageCursor.DEFAULT_LIMIT : limit;
+        return PageCursor.page(
+                userService.getFriendPageByUser(userId, PageCursor.decode(after), pageLimit), pageLimit, User::getId);
     }
 
     @GetMapping("/{userId}/friends/common/{otherId}")
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Value;
+
+@Value
+public class GenreChangedEvent {
+
+    Integer genreId;
+
+    Long filmId;
+
+    public static GenreChangedEvent onFilm(int genreId, long filmId) {
+        return new GenreChangedEvent(genreId, filmId);
+    }
+
+    public static GenreChangedEvent genre(int genreId) {
+        return new GenreChangedEvent(genreId, null);
+    }
+
+    public static GenreChangedEvent allGenres() {
+        return new GenreChangedEvent(null, null);
+    }
+}
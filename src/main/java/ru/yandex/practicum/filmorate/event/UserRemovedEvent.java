@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Value;
+
+@Value
+public class UserRemovedEvent {
+
+    Long userId;
+
+    public static UserRemovedEvent allUsers() {
+        return new UserRemovedEvent(null);
+    }
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+public class EdgeImportResult {
+
+    long imported;
+
+    long duplicates;
+
+    long invalid;
+
+    List<String> errors;
+}
@@ -1,6 +1,6 @@
 package ru.yandex.practicum.filmorate.model;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -23,8 +23,10 @@ public class Film {
 
     @NotNull
     @NotBlank
+    @Length(max = 64)
     private String name;
 
+    @NotNull
     @Length(max = 200)
     @EqualsAndHashCode.Exclude
     private String description;
@@ -32,6 +34,7 @@ public class Film {
     @Positive
     private int duration;
 
+    @NotNull
     @FirstFilmBirthdayValidator
     private LocalDate releaseDate;
 
@@ -45,10 +48,7 @@ public class Film {
     private final Set<Genre> genres = new HashSet<>();
 
     //TODO TreeMap<Integer, Integer> likes; userId/rate
-    private final Set<Long> userFilmLike = new HashSet<>();
-
-    @JsonIgnore
-    public int getLikesSize() {
-        return userFilmLike.size();
-    }
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @EqualsAndHashCode.Exclude
+    private long likesCount;
 }
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum FilmField {
+    ID("id", "id"),
+    NAME("name", "name"),
+    DESCRIPTION("description", "description"),
+    DURATION("duration", "duration"),
+    RELEASE_DATE("releaseDate", "release_date"),
+    RATE("rate", "rate"),
+    MPA("mpa", null),
+    GENRES("genres", null),
+    LIKES_COUNT("likesCount", "likes_count");
+
+    private final String property;
+    private final String column;
+
+    public static FilmField fromProperty(String property) {
+
+        for (FilmField field : values()) {
+            if (field.property.equals(property)) {
+                return field;
+            }
+        }
+
+        throw new IllegalArgumentException("Неизвестное поле фильма => " + property);
+    }
+}
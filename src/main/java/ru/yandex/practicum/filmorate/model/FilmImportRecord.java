@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Value;
+
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FilmImportRecord {
+
+    int index;
+
+    Outcome outcome;
+
+    Long id;
+
+    String message;
+
+    public static FilmImportRecord created(int index, long id) {
+        return new FilmImportRecord(index, Outcome.CREATED, id, null);
+    }
+
+    public static FilmImportRecord duplicate(int index, Long existingId, String message) {
+        return new FilmImportRecord(index, Outcome.DUPLICATE, existingId, message);
+    }
+
+    public static FilmImportRecord invalid(int index, String message) {
+        return new FilmImportRecord(index, Outcome.INVALID, null, message);
+    }
+
+    public enum Outcome {
+        CREATED,
+        DUPLICATE,
+        INVALID
+    }
+}
@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+public class FilmImportResult {
+
+    int created;
+
+    int duplicates;
+
+    int invalid;
+
+    List<FilmImportRecord> records;
+
+    public static FilmImportResult of(List<FilmImportRecord> records) {
+
+        final int[] outcomes = new int[FilmImportRecord.Outcome.values().length];
+
+        records.forEach(record -> outcomes[record.getOutcome().ordinal()]++);
+
+        return new FilmImportResult(
+                outcomes[FilmImportRecord.Outcome.CREATED.ordinal()],
+                outcomes[FilmImportRecord.Outcome.DUPLICATE.ordinal()],
+                outcomes[FilmImportRecord.Outcome.INVALID.ordinal()],
+                records);
+    }
+}
@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+import org.hibernate.validator.constraints.Length;
+import ru.yandex.practicum.filmorate.annotation.FirstFilmBirthdayValidator;
+
+import javax.validation.constraints.*;
+import java.time.LocalDate;
+import java.util.Set;
+
+@Data
+@Builder
+public class FilmPatch {
+
+    @Pattern(regexp = ".*\\S.*", message = "не должно быть пустым")
+    private String name;
+
+    @Length(max = 200)
+    private String description;
+
+    @Positive
+    private Integer duration;
+
+    @FirstFilmBirthdayValidator
+    private LocalDate releaseDate;
+
+    @Max(value = 10)
+    @PositiveOrZero
+    private Float rate;
+
+    private Mpa mpa;
+
+    private Set<Genre> genres;
+}
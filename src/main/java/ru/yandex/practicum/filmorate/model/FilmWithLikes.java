@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.Value;
+
+import java.util.Set;
+
+@Value
+public class FilmWithLikes {
+
+    @JsonUnwrapped
+    Film film;
+
+    Set<Long> userFilmLike;
+}
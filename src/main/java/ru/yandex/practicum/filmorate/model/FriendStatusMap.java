@@ -0,0 +1,204 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+public class FriendStatusMap extends AbstractMap<Long, Status> {
+    private static final int MIN_CAPACITY = 4;
+    private static final long[] NO_FRIEND_IDS = new long[0];
+    private static final byte[] NO_STATUSES = new byte[0];
+    private static final Status[] STATUSES = Status.values();
+    private long[] friendIds = NO_FRIEND_IDS;
+    private byte[] statuses = NO_STATUSES;
+    private int size;
+
+    public FriendStatusMap() {
+    }
+
+    public FriendStatusMap(Map<Long, Status> friends) {
+
+        if (friends instanceof FriendStatusMap) {
+            final FriendStatusMap other = (FriendStatusMap) friends;
+
+            friendIds = Arrays.copyOf(other.friendIds, other.size);
+            statuses = Arrays.copyOf(other.statuses, other.size);
+            size = other.size;
+        } else {
+            putAll(friends);
+        }
+    }
+
+    public Status get(long friendId) {
+
+        final int index = indexOf(friendId);
+
+        return index >= 0 ? STATUSES[statuses[index]] : null;
+    }
+
+    public boolean containsKey(long friendId) {
+        return indexOf(friendId) >= 0;
+    }
+
+    public Status put(long friendId, Status status) {
+
+        Objects.requireNonNull(status);
+
+        final int index = indexOf(friendId);
+
+        if (index >= 0) {
+            final Status oldStatus = STATUSES[statuses[index]];
+            statuses[index] = (byte) status.ordinal();
+            return oldStatus;
+        }
+
+        insertAt(-index - 1, friendId, status);
+
+        return null;
+    }
+
+    public Status remove(long friendId) {
+
+        final int index = indexOf(friendId);
+
+        if (index < 0) {
+            return null;
+        }
+
+        final Status oldStatus = STATUSES[statuses[index]];
+        removeAt(index);
+
+        return oldStatus;
+    }
+
+    public FriendStatusMap tailMap(long fromFriendId, boolean inclusive) {
+
+        final int index = indexOf(fromFriendId);
+        final int from = index >= 0 ? (inclusive ? index : index + 1) : -index - 1;
+        final FriendStatusMap tail = new FriendStatusMap();
+
+        tail.friendIds = Arrays.copyOfRange(friendIds, from, size);
+        tail.statuses = Arrays.copyOfRange(statuses, from, size);
+        tail.size = size - from;
+
+        return tail;
+    }
+
+    @Override
+    public Status get(Object friendId) {
+        return friendId instanceof Long ? get(((Long) friendId).longValue()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object friendId) {
+        return friendId instanceof Long && containsKey(((Long) friendId).longValue());
+    }
+
+    @Override
+    public Status put(Long friendId, Status status) {
+        return put(friendId.longValue(), status);
+    }
+
+    @Override
+    public Status remove(Object friendId) {
+        return friendId instanceof Long ? remove(((Long) friendId).longValue()) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        friendIds = NO_FRIEND_IDS;
+        statuses = NO_STATUSES;
+        size = 0;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super Long, ? super Status> action) {
+
+        for (int i = 0; i < size; i++) {
+            action.accept(friendIds[i], STATUSES[statuses[i]]);
+        }
+    }
+
+    @Override
+    public Set<Entry<Long, Status>> entrySet() {
+
+        return new AbstractSet<>() {
+
+            @Override
+            public Iterator<Entry<Long, Status>> iterator() {
+
+                return new Iterator<>() {
+                    private int next;
+                    private int last = -1;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Entry<Long, Status> next() {
+
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+
+                        last = next++;
+
+                        return new SimpleImmutableEntry<>(friendIds[last], STATUSES[statuses[last]]);
+                    }
+
+                    @Override
+                    public void remove() {
+
+                        if (last < 0) {
+                            throw new IllegalStateException();
+                        }
+
+                        removeAt(last);
+                        next = last;
+                        last = -1;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int indexOf(long friendId) {
+        return Arrays.binarySearch(friendIds, 0, size, friendId);
+    }
+
+    private void insertAt(int index, long friendId, Status status) {
+
+        if (size == friendIds.length) {
+            final int capacity = Math.max(MIN_CAPACITY, size + (size >> 1));
+
+            friendIds = Arrays.copyOf(friendIds, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+        }
+
+        System.arraycopy(friendIds, index, friendIds, index + 1, size - index);
+        System.arraycopy(statuses, index, statuses, index + 1, size - index);
+
+        friendIds[index] = friendId;
+        statuses[index] = (byte) status.ordinal();
+        size++;
+    }
+
+    private void removeAt(int index) {
+
+        System.arraycopy(friendIds, index + 1, friendIds, index, size - index - 1);
+        System.arraycopy(statuses, index + 1, statuses, index, size - index - 1);
+
+        size--;
+    }
+}
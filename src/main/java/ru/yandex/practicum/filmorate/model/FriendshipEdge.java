@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+@Value
+@Builder
+@Jacksonized
+public class FriendshipEdge {
+
+    long userId;
+
+    long friendId;
+
+    Status status;
+
+    public FriendshipEdge reverse() {
+        return new FriendshipEdge(friendId, userId, status.reverse());
+    }
+}
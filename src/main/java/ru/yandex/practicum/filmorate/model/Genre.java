@@ -1,19 +1,21 @@
 package ru.yandex.practicum.filmorate.model;
 
 import lombok.Builder;
-import lombok.Data;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
 
 import javax.validation.constraints.*;
 
-@Data
-@Builder
+@Value
+@Builder(toBuilder = true)
+@Jacksonized
 public class Genre {
 
     @Positive
-    private Integer id;
+    Integer id;
 
     @NotNull
     @NotBlank
-    private String name;
+    String name;
 
 }
@@ -0,0 +1,273 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.*;
+import java.util.function.LongConsumer;
+
+public class LongHashSet extends AbstractSet<Long> {
+    private static final int MIN_CAPACITY = 4;
+    private static final long EMPTY = 0L;
+    private long[] values;
+    private int mask;
+    private int threshold;
+    private int size;
+    private boolean containsEmpty;
+
+    public LongHashSet() {
+        this(0);
+    }
+
+    public LongHashSet(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public LongHashSet(Collection<Long> values) {
+        this(values.size());
+        addAll(values);
+    }
+
+    public boolean add(long value) {
+
+        if (value == EMPTY) {
+            if (containsEmpty) {
+                return false;
+            }
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+
+        int slot = slotOf(value);
+
+        while (values[slot] != EMPTY) {
+            if (values[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        values[slot] = value;
+
+        if (++size > threshold) {
+            rehash(values.length << 1);
+        }
+
+        return true;
+    }
+
+    public boolean contains(long value) {
+
+        if (value == EMPTY) {
+            return containsEmpty;
+        }
+
+        return indexOf(value) >= 0;
+    }
+
+    public boolean remove(long value) {
+
+        if (value == EMPTY) {
+            if (!containsEmpty) {
+                return false;
+            }
+            containsEmpty = false;
+            size--;
+            return true;
+        }
+
+        final int slot = indexOf(value);
+
+        if (slot < 0) {
+            return false;
+        }
+
+        shiftBack(slot);
+        size--;
+
+        return true;
+    }
+
+    public void forEachLong(LongConsumer consumer) {
+
+        if (containsEmpty) {
+            consumer.accept(EMPTY);
+        }
+
+        for (long value : values) {
+            if (value != EMPTY) {
+                consumer.accept(value);
+            }
+        }
+    }
+
+    public long[] toLongArray() {
+
+        final long[] result = new long[size];
+        final int[] position = {0};
+
+        forEachLong(value -> result[position[0]++] = value);
+
+        return result;
+    }
+
+    @Override
+    public boolean add(Long value) {
+        return add(value.longValue());
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return value instanceof Long && contains(((Long) value).longValue());
+    }
+
+    @Override
+    public boolean remove(Object value) {
+        return value instanceof Long && remove(((Long) value).longValue());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+        containsEmpty = false;
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+
+        return new Iterator<>() {
+            private long[] snapshot = values;
+            private boolean emptyPending = containsEmpty;
+            private int slot = nextSlot(0);
+            private long lastValue;
+            private boolean removable;
+
+            @Override
+            public boolean hasNext() {
+                return emptyPending || slot < snapshot.length;
+            }
+
+            @Override
+            public Long next() {
+
+                if (emptyPending) {
+                    emptyPending = false;
+                    lastValue = EMPTY;
+                    removable = true;
+                    return EMPTY;
+                }
+                if (slot >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+
+                final long value = snapshot[slot];
+                slot = nextSlot(slot + 1);
+
+                lastValue = value;
+                removable = true;
+
+                return value;
+            }
+
+            @Override
+            public void remove() {
+
+                if (!removable) {
+                    throw new IllegalStateException();
+                }
+                if (snapshot == values) {
+                    snapshot = values.clone();
+                }
+
+                removable = false;
+                LongHashSet.this.remove(lastValue);
+            }
+
+            private int nextSlot(int from) {
+
+                while (from < snapshot.length && snapshot[from] == EMPTY) {
+                    from++;
+                }
+
+                return from;
+            }
+        };
+    }
+
+    private int indexOf(long value) {
+
+        int slot = slotOf(value);
+
+        while (values[slot] != EMPTY) {
+            if (values[slot] == value) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    private void shiftBack(int gap) {
+
+        int next = (gap + 1) & mask;
+
+        while (values[next] != EMPTY) {
+            final int home = slotOf(values[next]);
+
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        values[gap] = EMPTY;
+    }
+
+    private void rehash(int capacity) {
+
+        final long[] oldValues = values;
+
+        allocate(capacity);
+
+        for (long value : oldValues) {
+            if (value != EMPTY) {
+                int slot = slotOf(value);
+
+                while (values[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                values[slot] = value;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        values = new long[capacity];
+        mask = capacity - 1;
+        threshold = capacity * 3 / 4;
+    }
+
+    private int slotOf(long value) {
+
+        final long hash = value * 0x9E3779B97F4A7C15L;
+
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+
+        int capacity = MIN_CAPACITY;
+
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+
+        return capacity;
+    }
+}
@@ -0,0 +1,143 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.*;
+import java.util.function.LongConsumer;
+
+public class LongSortedSet extends AbstractSet<Long> {
+    private static final int MIN_CAPACITY = 4;
+    private static final long[] NO_VALUES = new long[0];
+    private long[] values = NO_VALUES;
+    private int size;
+
+    public boolean add(long value) {
+
+        final int index = indexOf(value);
+
+        if (index >= 0) {
+            return false;
+        }
+
+        insertAt(-index - 1, value);
+
+        return true;
+    }
+
+    public boolean contains(long value) {
+        return indexOf(value) >= 0;
+    }
+
+    public boolean remove(long value) {
+
+        final int index = indexOf(value);
+
+        if (index < 0) {
+            return false;
+        }
+
+        removeAt(index);
+
+        return true;
+    }
+
+    public long[] tail(long afterValue, int limit) {
+
+        final int index = indexOf(afterValue);
+        final int from = index >= 0 ? index + 1 : -index - 1;
+
+        return Arrays.copyOfRange(values, from, from + Math.max(0, Math.min(limit, size - from)));
+    }
+
+    public void forEachLong(LongConsumer consumer) {
+
+        for (int i = 0; i < size; i++) {
+            consumer.accept(values[i]);
+        }
+    }
+
+    @Override
+    public boolean add(Long value) {
+        return add(value.longValue());
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return value instanceof Long && contains(((Long) value).longValue());
+    }
+
+    @Override
+    public boolean remove(Object value) {
+        return value instanceof Long && remove(((Long) value).longValue());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        values = NO_VALUES;
+        size = 0;
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+
+        return new Iterator<>() {
+            private int next;
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Long next() {
+
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+
+                last = next++;
+
+                return values[last];
+            }
+
+            @Override
+            public void remove() {
+
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+
+                removeAt(last);
+                next = last;
+                last = -1;
+            }
+        };
+    }
+
+    private int indexOf(long value) {
+        return Arrays.binarySearch(values, 0, size, value);
+    }
+
+    private void insertAt(int index, long value) {
+
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(MIN_CAPACITY, size + (size >> 1)));
+        }
+
+        System.arraycopy(values, index, values, index + 1, size - index);
+
+        values[index] = value;
+        size++;
+    }
+
+    private void removeAt(int index) {
+
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+
+        size--;
+    }
+}
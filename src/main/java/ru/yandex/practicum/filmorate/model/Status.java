@@ -1,8 +1,37 @@
 package ru.yandex.practicum.filmorate.model;
 
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
 public enum Status {
-    FRIENDSHIP,
-    SUBSCRIPTION,
-    APPLICATION;
-    String id;
+    FRIENDSHIP(1),
+    SUBSCRIPTION(2),
+    APPLICATION(3);
+
+    private final int code;
+
+    public Status reverse() {
+
+        switch (this) {
+            case SUBSCRIPTION:
+                return APPLICATION;
+            case APPLICATION:
+                return SUBSCRIPTION;
+            default:
+                return FRIENDSHIP;
+        }
+    }
+
+    public static Status fromCode(int code) {
+
+        for (Status status : values()) {
+            if (status.code == code) {
+                return status;
+            }
+        }
+
+        throw new IllegalArgumentException("Неизвестный код статуса дружбы => " + code);
+    }
 }
@@ -6,7 +6,6 @@ import lombok.extern.jackson.Jacksonized;
 
 import javax.validation.constraints.*;
 import java.time.LocalDate;
-import java.util.TreeMap;
 
 @Value
 @Builder(toBuilder = true)
@@ -30,6 +29,6 @@ public class User {
     LocalDate birthday;
 
     @Builder.Default
-    TreeMap<Long, Status> friendsIdsStatus = new TreeMap<>();
+    FriendStatusMap friendsIdsStatus = new FriendStatusMap();
 
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum UserField {
+    ID("id", "id"),
+    EMAIL("email", "email"),
+    LOGIN("login", "login"),
+    NAME("name", "name"),
+    BIRTHDAY("birthday", "birthday"),
+    FRIENDS_IDS_STATUS("friendsIdsStatus", null);
+
+    private final String property;
+    private final String column;
+
+    public static UserField fromProperty(String property) {
+
+        for (UserField field : values()) {
+            if (field.property.equals(property)) {
+                return field;
+            }
+        }
+
+        throw new IllegalArgumentException("Неизвестное поле пользователя => " + property);
+    }
+}
@@ -19,7 +19,7 @@ public class UserFriends {
                 .builder()
                 .id(resultSet.getLong("id"))
                 .friendsId(resultSet.getLong("friendsId"))
-                .status(Status.valueOf(resultSet.getString("status")))
+                .status(Status.fromCode(resultSet.getInt("status")))
                 .build();
     }
 }
\ No newline at end of file
@@ -3,18 +3,43 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.validation.annotation.Validated;
 import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.EdgeImportResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmImportRecord;
+import ru.yandex.practicum.filmorate.model.FilmImportResult;
+import ru.yandex.practicum.filmorate.model.FilmLikeEdge;
+import ru.yandex.practicum.filmorate.model.FilmPatch;
+import ru.yandex.practicum.filmorate.model.FilmWithLikes;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.film.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.film.index.FilmLikeCounters;
+import ru.yandex.practicum.filmorate.storage.film.index.FilmPopularityIndex;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import javax.validation.Valid;
+import javax.validation.Validator;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.Positive;
-import java.util.Collection;
+import javax.validation.constraints.PositiveOrZero;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static java.util.stream.Collectors.toList;
 
 
 @Service
@@ -22,8 +47,17 @@ import java.util.Collection;
 @Validated
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 public class FilmService {
+    private static final int MAX_IMPORT_ERRORS = 100;
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
+    private final MpaStorage mpaStorage;
+    private final GenreStorage genreStorage;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final FilmLikeCounters filmLikeCounters;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    @Value("${filmorate.import.chunk-size:1000}")
+    private final int importChunkSize;
 
 
     @Validated
@@ -33,11 +67,116 @@ public class FilmService {
 
         final Film createdFilm = filmStorage.createFilm(film);
 
+        filmPopularityIndex.addFilm(createdFilm.getId());
+
         log.info("Фильм добавлен => {}", createdFilm);
 
         return createdFilm;
     }
 
+    public FilmImportResult importFilms(Iterator<Film> films) {
+
+        final List<FilmImportRecord> records = new ArrayList<>();
+
+        transactionTemplate.executeWithoutResult(status -> {
+
+            final Set<Integer> mpaIds = new HashSet<>();
+            final Set<Integer> genreIds = new HashSet<>();
+            final Set<String> names = new HashSet<>();
+            final Set<String> descriptions = new HashSet<>();
+            final List<Film> chunk = new ArrayList<>(importChunkSize);
+            final List<Integer> chunkIndexes = new ArrayList<>(importChunkSize);
+
+            mpaStorage.getMpaList().forEach(mpa -> mpaIds.add(mpa.getId()));
+            genreStorage.getGenreList().forEach(genre -> genreIds.add(genre.getId()));
+
+            while (films.hasNext()) {
+                final Film film = films.next();
+                final int index = records.size();
+                final String violations = validateImportedFilm(film, mpaIds, genreIds);
+
+                if (violations != null) {
+                    records.add(FilmImportRecord.invalid(index, violations));
+                } else if (names.contains(film.getName()) || descriptions.contains(film.getDescription())) {
+                    records.add(FilmImportRecord.duplicate(index, null,
+                            "Фильм с именем => " + film.getName() + " уже встречался в запросе"));
+                } else {
+                    names.add(film.getName());
+                    descriptions.add(film.getDescription());
+                    records.add(null);
+                    chunk.add(film);
+                    chunkIndexes.add(index);
+                }
+
+                if (chunk.size() == importChunkSize) {
+                    importChunk(chunk, chunkIndexes, records);
+                    chunk.clear();
+                    chunkIndexes.clear();
+                }
+            }
+
+            importChunk(chunk, chunkIndexes, records);
+        });
+
+        final FilmImportResult result = FilmImportResult.of(records);
+
+        records.stream()
+                .filter(record -> record.getOutcome() == FilmImportRecord.Outcome.CREATED)
+                .forEach(record -> filmPopularityIndex.addFilm(record.getId()));
+
+        log.info("Импорт фильмов завершен: добавлено => {}, дубликатов => {}, с ошибками => {}",
+                result.getCreated(), result.getDuplicates(), result.getInvalid());
+
+        return result;
+    }
+
+    public EdgeImportResult importLikes(Iterator<FilmLikeEdge> likes) {
+
+        final Map<Long, Long> addedLikesByFilmId = new HashMap<>();
+        final List<String> errors = new ArrayList<>();
+        final long[] total = new long[1];
+        final long[] invalid = new long[1];
+
+        transactionTemplate.executeWithoutResult(status -> {
+
+            final LongHashSet filmIds = filmStorage.getAllFilmIds();
+            final LongHashSet userIds = userStorage.getAllUserIds();
+            final LongHashSet likeKeys = new LongHashSet();
+            final List<FilmLikeEdge> chunk = new ArrayList<>(importChunkSize);
+
+            while (likes.hasNext()) {
+                final FilmLikeEdge like = likes.next();
+                final String violation = validateImportedLike(like, filmIds, userIds);
+
+                if (violation != null) {
+                    if (errors.size() < MAX_IMPORT_ERRORS) {
+                        errors.add("Запись с индексом => " + total[0] + " => " + violation);
+                    }
+                    invalid[0]++;
+                } else if (likeKeys.add(like.getFilmId() << 32 | like.getUserId())) {
+                    chunk.add(like);
+                }
+
+                total[0]++;
+
+                if (chunk.size() == importChunkSize) {
+                    importLikesChunk(chunk, addedLikesByFilmId);
+                    chunk.clear();
+                }
+            }
+
+            importLikesChunk(chunk, addedLikesByFilmId);
+        });
+
+        final long imported = addedLikesByFilmId.values().stream().mapToLong(Long::longValue).sum();
+        final EdgeImportResult result = new EdgeImportResult(imported, total[0] - imported - invalid[0], invalid[0], errors);
+
+        log.info("Импорт лайков завершен: добавлено => {}, дубликатов => {}, с ошибками => {}",
+                result.getImported(), result.getDuplicates(), result.getInvalid());
+
+        return result;
+    }
+
     @Validated
     public Film updateFilm(@Valid Film film) throws NotFoundException, ConflictException {
 
@@ -52,15 +191,48 @@ public class FilmService {
         return updatedFilm;
     }
 
-    public Collection<Film> getAllFilm() {
+    @Validated
+    public Film patchFilm(@Positive long filmId, @Valid FilmPatch filmPatch) throws NotFoundException, ConflictException {
+
+        final Film patchedFilm = filmStorage.patchFilm(filmId, filmPatch);
+
+        log.info("Фильм c id => {} частично обновлен => {}", filmId, patchedFilm);
+
+        return patchedFilm;
+    }
+
+    public Collection<Film> getAllFilm(Set<FilmField> fields) {
 
-        final Collection<Film> allFilm = filmStorage.getAllFilm();
+        final Collection<Film> allFilm = filmStorage.getAllFilm(fields);
 
         log.info("Фильм получены (кол-во) => {}", allFilm.size());
 
         return allFilm;
     }
 
+    public void exportAllFilm(Consumer<Film> consumer) {
+
+        final long[] exported = {0};
+
+        filmStorage.streamAllFilm(film -> {
+            consumer.accept(film);
+            exported[0]++;
+        });
+
+        log.info("Фильмы выгружены потоком (кол-во) => {}", exported[0]);
+    }
+
+    public List<Film> getFilmPage(@PositiveOrZero long afterId,
+                                  @Positive @Max(1000) int limit,
+                                  Set<FilmField> fields) {
+
+        final List<Film> films = filmStorage.getFilmPage(afterId, limit, fields);
+
+        log.info("Страница фильмов получена после id => {} (кол-во) => {}", afterId, films.size());
+
+        return films;
+    }
+
     public Film getFilmById(@Positive long filmId) throws NotFoundException {
 
         final Film film = filmStorage.getFilmById(filmId);
@@ -70,10 +242,63 @@ public class FilmService {
         return film;
     }
 
+    public Film getFilmById(@Positive long filmId, Set<FilmField> fields) throws NotFoundException {
+
+        final Film film = filmStorage.getFilmById(filmId, fields);
+
+        log.info("Фильм получен c id => {} =>>> {}", filmId, film);
+
+        return film;
+    }
+
+    public List<Film> getFilmsByIds(@NotEmpty List<@Positive Long> filmIds) {
+
+        final List<Film> films = filmStorage.getFilmsByIds(new ArrayList<>(new LinkedHashSet<>(filmIds)));
+
+        log.info("Фильмы получены по id (запрошено => {}, найдено => {})", filmIds.size(), films.size());
+
+        return films;
+    }
+
+    public FilmWithLikes getFilmWithLikesById(@Positive long filmId) throws NotFoundException {
+        return withLikes(List.of(getFilmById(filmId))).get(0);
+    }
+
+    public List<FilmWithLikes> withLikes(Collection<Film> films) {
+
+        final Map<Long, LongHashSet> likesByFilmId = filmStorage.getFilmLikes(films
+                .stream()
+                .map(Film::getId)
+                .collect(toList()));
+
+        log.info("Лайки загружены для фильмов (кол-во) => {}", likesByFilmId.size());
+
+        return films
+                .stream()
+                .map(film -> new FilmWithLikes(film, likesByFilmId.get(film.getId())))
+                .collect(toList());
+    }
+
+    public List<Long> getFilmLikePage(@Positive long filmId,
+                                      @PositiveOrZero long afterUserId,
+                                      @Positive @Max(1000) int limit) throws NotFoundException {
+
+        filmStorage.checkFilmById(filmId);
+
+        final List<Long> userIds = filmStorage.getFilmLikePage(filmId, afterUserId, limit);
+
+        log.info("Страница лайков фильма с id => {} получена после id => {} (кол-во) => {}",
+                filmId, afterUserId, userIds.size());
+
+        return userIds;
+    }
+
     public String removeAllFilm() {
 
         filmStorage.removeAllFilm();
 
+        filmPopularityIndex.clear();
+
         log.info("Все фильмы удалены, id сброшен");
 
         return "Все фильмы удалены. id сброшен";
@@ -83,6 +308,8 @@ public class FilmService {
 
         filmStorage.removeFilmById(filmId);
 
+        filmPopularityIndex.removeFilm(filmId);
+
         log.info("Фильм c id => {} удален", filmId);
 
         return "Фильм c id => " + filmId + "удален";
@@ -90,12 +317,6 @@ public class FilmService {
 
     public void addUserLikeByFilmId(@Positive long filmId, @Positive long userId) throws ConflictException, NotFoundException {
 
-        filmStorage.checkFilmById(filmId);
-
-        userStorage.checkUserById(userId);
-
-        filmStorage.checkFilmLikeByUserId(filmId, userId, true);
-
         filmStorage.addUserLikeOnFilm(filmId, userId);
 
         log.info("Пользователем c id => {} добавлен лайк фильму c id => {}", userId, filmId);
@@ -103,24 +324,144 @@ public class FilmService {
 
     public void removeUserLikeByFilmId(@Positive long filmId, @Min(-2) long userId) throws ConflictException, NotFoundException {
 
-        filmStorage.checkFilmById(filmId);
+        if (!filmStorage.removeUserLikeOnFilm(filmId, userId)) {
 
-        userStorage.checkUserById(userId);
+            filmStorage.checkFilmById(filmId);
 
-        filmStorage.checkFilmLikeByUserId(filmId, userId, false);
+            userStorage.checkUserById(userId);
 
-        filmStorage.removeUserLikeOnFilm(filmId, userId);
+            throw new NotFoundException("У фильма с id => " + filmId
+                    + " не существует лайка пользователя с id => " + userId);
+        }
 
         log.info("Пользователем c id => {} удален лайк у фильма c id => {}", userId, filmId);
     }
 
+    private void importLikesChunk(List<FilmLikeEdge> chunk, Map<Long, Long> addedLikesByFilmId) {
+
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        filmStorage.addUserLikesOnFilms(chunk).forEach((filmId, added) ->
+                addedLikesByFilmId.merge(filmId, added, Long::sum));
+    }
+
+    private String validateImportedLike(FilmLikeEdge like, LongHashSet filmIds, LongHashSet userIds) {
+
+        if (!filmIds.contains(like.getFilmId())) {
+            return "Фильм по id => " + like.getFilmId() + " не существует";
+        }
+        if (!userIds.contains(like.getUserId())) {
+            return "Пользователь по id => " + like.getUserId() + " не существует";
+        }
+
+        return null;
+    }
+
+    private void importChunk(List<Film> chunk, List<Integer> chunkIndexes, List<FilmImportRecord> records) {
+
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        final Map<String, Long> storedIdsByName = new HashMap<>();
+        final Map<String, Long> storedIdsByDescription = new HashMap<>();
+
+        filmStorage.getFilmsByNamesOrDescriptions(
+                        chunk.stream().map(Film::getName).collect(toList()),
+                        chunk.stream().map(Film::getDescription).collect(toList()))
+                .forEach(stored -> {
+                    storedIdsByName.put(stored.getName(), stored.getId());
+                    storedIdsByDescription.put(stored.getDescription(), stored.getId());
+                });
+
+        final List<Film> newFilms = new ArrayList<>(chunk.size());
+        final List<Integer> newFilmIndexes = new ArrayList<>(chunk.size());
+
+        for (int i = 0; i < chunk.size(); i++) {
+            final Film film = chunk.get(i);
+            final int index = chunkIndexes.get(i);
+            final Long storedId = storedIdsByName.getOrDefault(film.getName(),
+                    storedIdsByDescription.get(film.getDescription()));
+
+            if (storedId != null) {
+                records.set(index, FilmImportRecord.duplicate(index, storedId,
+                        "Такой фильм с именем => " + film.getName() + " уже существует по id => " + storedId));
+            } else {
+                newFilms.add(film);
+                newFilmIndexes.add(index);
+            }
+        }
+
+        filmStorage.createFilms(newFilms);
+
+        for (int i = 0; i < newFilms.size(); i++) {
+            records.set(newFilmIndexes.get(i), FilmImportRecord.created(newFilmIndexes.get(i), newFilms.get(i).getId()));
+        }
+    }
+
+    private String validateImportedFilm(Film film, Set<Integer> mpaIds, Set<Integer> genreIds) {
+
+        if (film.getId() != null) {
+            return "Для обновления используй PUT запрос, film имеет id => " + film.getId();
+        }
+
+        final StringJoiner violations = new StringJoiner("; ");
+
+        validator.validate(film)
+                .stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .forEach(violations::add);
+
+        if (film.getMpa() != null && !mpaIds.contains(film.getMpa().getId())) {
+            violations.add("mpa: Рейтинг по id => " + film.getMpa().getId() + " не существует");
+        }
+        film.getGenres()
+                .stream()
+                .map(Genre::getId)
+                .filter(genreId -> genreId != null && !genreIds.contains(genreId))
+                .forEach(genreId -> violations.add("genres: Жанр по id => " + genreId + " не существует"));
+
+        return violations.length() == 0 ? null : violations.toString();
+    }
+
+    @Scheduled(cron = "${filmorate.likes.recalculate-cron:0 0 4 * * *}")
+    public int recalculateLikesCount() {
+
+        final int repaired = filmStorage.recalculateLikesCount();
+
+        rebuildPopularityIndex();
+
+        log.info("Счетчики лайков пересчитаны, исправлено фильмов => {}", repaired);
+
+        return repaired;
+    }
+
     public Collection<Film> getFilmByPopular(@Positive int count) {
 
-        final Collection<Film> filmByPopular = filmStorage.getFilmByPopular(count);
+        if (filmPopularityIndex.isStale()) {
+            rebuildPopularityIndex();
+        }
+
+        filmStorage.flushPendingLikes();
+        filmLikeCounters.drainUnindexed(filmPopularityIndex::putFilm);
+
+        final List<Long> popularFilmIds = filmPopularityIndex.getTopFilmIds(count);
+
+        final Collection<Film> filmByPopular = filmStorage.getFilmsByIds(popularFilmIds);
 
         log.info("Запрошенное количество фильмов по популярности : {}", filmByPopular.size());
 
         return filmByPopular;
     }
 
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildPopularityIndex() {
+
+        filmPopularityIndex.rebuild(filmStorage.getAllFilmLikesCount());
+
+        log.info("Индекс популярности фильмов перестроен");
+    }
 }
@@ -48,7 +48,7 @@ public class GenreService {
 
         Genre result = genreStorage.createGenre(genre);
 
-        log.info("Жанр добавлен => {}", genre);
+        log.info("Жанр добавлен => {}", result);
 
         return result;
 
@@ -3,19 +3,38 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.validation.annotation.Validated;
+import ru.yandex.practicum.filmorate.exception.BadRequestException;
 import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.EdgeImportResult;
+import ru.yandex.practicum.filmorate.model.FriendshipEdge;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
+import ru.yandex.practicum.filmorate.model.Status;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
+import ru.yandex.practicum.filmorate.storage.film.index.FilmPopularityIndex;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import static ru.yandex.practicum.filmorate.model.Status.*;
 
@@ -25,7 +44,12 @@ import static ru.yandex.practicum.filmorate.model.Status.*;
 @Validated
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 public class UserService {
+    private static final int MAX_IMPORT_ERRORS = 100;
     private final UserStorage userStorage;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final TransactionTemplate transactionTemplate;
+    @Value("${filmorate.import.chunk-size:1000}")
+    private final int importChunkSize;
 
 
     @Validated
@@ -55,15 +79,38 @@ public class UserService {
         return user;
     }
 
-    public Collection<User> getAllUser() {
+    public Collection<User> getAllUser(Set<UserField> fields) {
 
-        final Collection<User> allUser = userStorage.getAllUser();
+        final Collection<User> allUser = userStorage.getAllUser(fields);
 
         log.info("Текущее количество пользователей : {}", allUser.size());
 
         return allUser;
     }
 
+    public void exportAllUser(Consumer<User> consumer) {
+
+        final long[] exported = {0};
+
+        userStorage.streamAllUser(user -> {
+            consumer.accept(user);
+            exported[0]++;
+        });
+
+        log.info("Пользователи выгружены потоком (кол-во) => {}", exported[0]);
+    }
+
+    public List<User> getUserPage(@PositiveOrZero long afterId,
+                                  @Positive @Max(1000) int limit,
+                                  Set<UserField> fields) {
+
+        final List<User> users = userStorage.getUserPage(afterId, limit, fields);
+
+        log.info("Страница пользователей получена после id => {} (кол-во) => {}", afterId, users.size());
+
+        return users;
+    }
+
     public User getUserById(@Positive long userId) throws NotFoundException {
 
         final User user = userStorage.getUserById(userId);
@@ -73,10 +120,30 @@ public class UserService {
         return user;
     }
 
+    public User getUserById(@Positive long userId, Set<UserField> fields) throws NotFoundException {
+
+        final User user = userStorage.getUserById(userId, fields);
+
+        log.info("Пользователь получен : {}", user);
+
+        return user;
+    }
+
+    public List<User> getUsersByIds(@NotEmpty List<@Positive Long> userIds) {
+
+        final List<User> users = userStorage.getUsersByIds(new ArrayList<>(new LinkedHashSet<>(userIds)));
+
+        log.info("Пользователи получены по id (запрошено => {}, найдено => {})", userIds.size(), users.size());
+
+        return users;
+    }
+
     public String removeAllUser() {
 
         userStorage.removeAllUser();
 
+        filmPopularityIndex.markStale();
+
         log.info("Все пользователи удалены. id сброшен");
 
         return "Все пользователи удалены. id сброшен";
@@ -86,6 +153,8 @@ public class UserService {
 
         userStorage.removeUserById(userId);
 
+        filmPopularityIndex.markStale();
+
         log.info("Пользователь с id => {} удален/удалены все его подписки", userId);
 
         return "Пользователь c id => " + userId + "удален/удалены все его подписки";
@@ -93,75 +162,81 @@ public class UserService {
 
     public void addFriend(@Positive long userId, @Min(-1) long otherId) throws NotFoundException, ConflictException {
 
-        userStorage.checkUserById(userId);
-        userStorage.checkUserById(otherId);
-
-        userStorage.checkUserFriendById(userId, otherId, true);
-        userStorage.checkUserFriendById(otherId, userId, true);
+        if (userId == otherId) {
+            throw new BadRequestException("Пользователь с id => " + userId + " не может добавить в друзья сам себя");
+        }
 
-        if (userStorage.checkFriendship(userId, otherId)
-                && userStorage.checkStatusFriendship(userId, otherId, APPLICATION)) {
+        final Status status = userStorage.addFriendship(userId, otherId);
 
-            userStorage.updateStatusFriendShip(userId, otherId, FRIENDSHIP);
-            userStorage.updateStatusFriendShip(otherId, userId, FRIENDSHIP);
+        if (status == FRIENDSHIP) {
 
             log.info("User с id => {} подтвердил дружбу c пользователем c id => {} статус {}", userId, otherId, FRIENDSHIP);
 
         } else {
 
-            userStorage.addFriend(userId, otherId, SUBSCRIPTION);
-            userStorage.addFriend(otherId, userId, APPLICATION);
-
             log.info("У пользователя с id => {} добавлена заявка от пользователю c id => {} неподтвержденная дружба статус {}", userId, otherId, SUBSCRIPTION);
             log.info("Подписчик с id => {} добавлен пользователю c id => {} неподтвержденная дружба статус {}", otherId, userId, APPLICATION);
         }
     }
 
-    public void removeFriend(@Positive long userId, @Positive long otherId) throws NotFoundException, ConflictException {
+    public EdgeImportResult importFriendships(Iterator<FriendshipEdge> edges) {
 
-        userStorage.checkFriendByUserId(userId);
+        final List<String> errors = new ArrayList<>();
+        final long[] total = new long[1];
+        final long[] imported = new long[1];
+        final long[] invalid = new long[1];
 
-        try {
-            userStorage.checkUserFriendById(userId, otherId, false);
+        transactionTemplate.executeWithoutResult(status -> {
 
-            userStorage.checkUserByFriendId(otherId);
+            final LongHashSet userIds = userStorage.getAllUserIds();
+            final Map<Long, Status> pairStatuses = new HashMap<>();
+            final List<FriendshipEdge> chunk = new ArrayList<>(importChunkSize);
 
-        } catch (NotFoundException e) {
+            while (edges.hasNext()) {
+                final FriendshipEdge edge = edges.next();
+                final String violation = validateImportedFriendship(edge, userIds, pairStatuses);
 
-            if (userStorage.checkStatusFriendship(userId, otherId, SUBSCRIPTION)
-                    || userStorage.checkStatusFriendship(userId, otherId, APPLICATION)) {
+                if (violation != null) {
+                    if (errors.size() < MAX_IMPORT_ERRORS) {
+                        errors.add("Запись с индексом => " + total[0] + " => " + violation);
+                    }
+                    invalid[0]++;
+                } else if (pairStatuses.putIfAbsent(pairKey(edge), pairStatus(edge)) == null) {
+                    chunk.add(edge);
+                }
 
-                userStorage.removeFriend(userId, otherId);
+                total[0]++;
 
-                log.info(e.getMessage() + " => Подписчик с id => {} удален от пользователя c id => {}", otherId, userId);
-                return;
+                if (chunk.size() == importChunkSize) {
+                    imported[0] += userStorage.addFriendshipEdges(chunk);
+                    chunk.clear();
+                }
             }
-            throw new NotFoundException(e.getMessage());
-        }
 
-        if (userStorage.checkStatusFriendship(userId, otherId, SUBSCRIPTION)
-                || userStorage.checkStatusFriendship(userId, otherId, APPLICATION)) {
+            if (!chunk.isEmpty()) {
+                imported[0] += userStorage.addFriendshipEdges(chunk);
+            }
+        });
 
-            if (userStorage.checkFriendship(otherId, userId)
-                    && userStorage.checkStatusFriendship(otherId, userId, APPLICATION)) {
+        final EdgeImportResult result = new EdgeImportResult(imported[0], total[0] - imported[0] - invalid[0], invalid[0], errors);
 
-                userStorage.removeFriend(otherId, userId);
+        log.info("Импорт дружбы завершен: добавлено => {}, дубликатов => {}, с ошибками => {}",
+                result.getImported(), result.getDuplicates(), result.getInvalid());
 
-                log.info("Пользователь с id => {} удалил от пользователя c id => {} заявку", userId, otherId);
-            }
+        return result;
+    }
 
-            userStorage.removeFriend(userId, otherId);
+    public void removeFriend(@Positive long userId, @Positive long otherId) throws NotFoundException {
 
-            log.info("У пользователя с id => {} удалена подписка/заявка от пользователя c id => {}", userId, otherId);
+        final Status status = userStorage.removeFriendship(userId, otherId);
 
-        } else {
+        if (status == FRIENDSHIP) {
 
-            userStorage.checkUserFriendById(otherId, userId, false);
+            log.info("Пользователь с id => {} удален от пользователя c id => {} и оставлен в подписках", otherId, userId);
 
-            userStorage.removeFriend(userId, otherId);
-            userStorage.updateStatusFriendShip(otherId, userId, SUBSCRIPTION);
+        } else {
 
-            log.info("Пользователь с id => {} удален от пользователя c id => {} и оставлен в подписках", otherId, userId);
+            log.info("У пользователя с id => {} удалена подписка/заявка от пользователя c id => {}", userId, otherId);
         }
     }
 
@@ -188,6 +263,20 @@ public class UserService {
         return allFriends;
     }
 
+    public List<User> getFriendPageByUser(@Positive long userId,
+                                          @PositiveOrZero long afterId,
+                                          @Positive @Max(1000) int limit) throws NotFoundException {
+
+        userStorage.checkUserById(userId);
+
+        final List<User> friends = userStorage.getFriendPageByUserId(userId, afterId, limit);
+
+        log.info("Страница друзей пользователя с id => {} получена после id => {} (кол-во) => {}",
+                userId, afterId, friends.size());
+
+        return friends;
+    }
+
     public Collection<User> getCommonFriendsByUser(@Positive long userId, @Positive long otherId) throws NotFoundException, ConflictException {
 
         userStorage.checkUserById(userId);
@@ -214,4 +303,38 @@ public class UserService {
 
         return commonFriends;
     }
-}
\ No newline at end of file
+
+    private static long pairKey(FriendshipEdge edge) {
+        return Math.min(edge.getUserId(), edge.getFriendId()) << 32 | Math.max(edge.getUserId(), edge.getFriendId());
+    }
+
+    private static Status pairStatus(FriendshipEdge edge) {
+        return edge.getUserId() < edge.getFriendId() ? edge.getStatus() : edge.getStatus().reverse();
+    }
+
+    private String validateImportedFriendship(FriendshipEdge edge, LongHashSet userIds, Map<Long, Status> pairStatuses) {
+
+        if (edge.getStatus() == null) {
+            return "status: не должно равняться null";
+        }
+        if (edge.getUserId() == edge.getFriendId()) {
+            return "Пользователь с id => " + edge.getUserId() + " не может добавить в друзья сам себя";
+        }
+        if (!userIds.contains(edge.getUserId())) {
+            return "Пользователь по id => " + edge.getUserId() + " не существует";
+        }
+        if (!userIds.contains(edge.getFriendId())) {
+            return "Пользователь по id => " + edge.getFriendId() + " не существует";
+        }
+
+        final Status pairStatus = pairStatuses.get(pairKey(edge));
+
+        if (pairStatus != null && pairStatus != pairStatus(edge)) {
+            return "Статус " + edge.getStatus() + " для пользователей с id => " + edge.getUserId() + " и "
+                    + edge.getFriendId() + " противоречит ранее переданному статусу "
+                    + (edge.getUserId() < edge.getFriendId() ? pairStatus : pairStatus.reverse());
+        }
+
+        return null;
+    }
+}
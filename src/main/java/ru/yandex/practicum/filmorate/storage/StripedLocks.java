@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+public class StripedLocks {
+    private final ReentrantLock[] locks;
+
+    public StripedLocks(int stripes) {
+
+        if (Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Количество блокировок должно быть степенью двойки => " + stripes);
+        }
+
+        locks = new ReentrantLock[stripes];
+
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T call(Supplier<T> action, Object... keys) {
+
+        if (keys.length == 1) {
+            final ReentrantLock lock = locks[stripeOf(keys[0])];
+
+            lock.lock();
+            try {
+                return action.get();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        final int[] stripes = Arrays
+                .stream(keys)
+                .mapToInt(this::stripeOf)
+                .distinct()
+                .sorted()
+                .toArray();
+
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+        }
+        try {
+            return action.get();
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                locks[stripes[i]].unlock();
+            }
+        }
+    }
+
+    public void run(Runnable action, Object... keys) {
+        call(() -> {
+            action.run();
+            return null;
+        }, keys);
+    }
+
+    private int stripeOf(Object key) {
+
+        final int hash = Objects.hashCode(key);
+
+        return (hash ^ (hash >>> 16)) & (locks.length - 1);
+    }
+}
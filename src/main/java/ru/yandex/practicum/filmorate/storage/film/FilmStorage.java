@@ -3,23 +3,59 @@ package ru.yandex.practicum.filmorate.storage.film;
 import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmLikeEdge;
+import ru.yandex.practicum.filmorate.model.FilmPatch;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
     Film createFilm(Film film);
 
+    void createFilms(List<Film> films);
+
     void resetGlobalId();
 
     Film updateFilm(Film film);
 
+    Film patchFilm(long filmId, FilmPatch filmPatch) throws NotFoundException, ConflictException;
+
     Film getFilmById(long filmId);
 
+    Film getFilmById(long filmId, Set<FilmField> fields);
+
     Collection<Film> getAllFilm();
 
+    Collection<Film> getAllFilm(Set<FilmField> fields);
+
+    List<Film> getFilmPage(long afterId, int limit);
+
+    List<Film> getFilmPage(long afterId, int limit, Set<FilmField> fields);
+
+    void streamAllFilm(Consumer<Film> consumer);
+
     Collection<Film> getFilmByPopular(int count);
 
+    List<Film> getFilmsByIds(List<Long> filmIds);
+
+    List<Film> getFilmsByNamesOrDescriptions(Collection<String> names, Collection<String> descriptions);
+
+    Map<Long, Long> getAllFilmLikesCount();
+
+    LongHashSet getAllFilmIds();
+
+    long getFilmLikesCount(long filmId) throws NotFoundException;
+
+    List<Long> getFilmLikePage(long filmId, long afterUserId, int limit);
+
+    Map<Long, LongHashSet> getFilmLikes(List<Long> filmIds);
+
     void removeFilmById(long filmId);
 
     void removeAllFilm();
@@ -30,7 +66,15 @@ public interface FilmStorage {
 
     void checkFilmLikeByUserId(long filmId, long userId, boolean addOrRemove) throws ConflictException, NotFoundException;
 
-    void addUserLikeOnFilm(long filmId, long userId);
+    void addUserLikeOnFilm(long filmId, long userId) throws ConflictException, NotFoundException;
+
+    boolean removeUserLikeOnFilm(long filmId, long userId);
+
+    Map<Long, Long> addUserLikesOnFilms(List<FilmLikeEdge> likes);
+
+    Map<Long, Long> removeUserLikesOnFilms(List<FilmLikeEdge> likes);
+
+    int recalculateLikesCount();
 
-    void removeUserLikeOnFilm(long filmId, long userId);
+    void flushPendingLikes();
 }
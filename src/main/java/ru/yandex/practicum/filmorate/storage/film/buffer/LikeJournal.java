@@ -0,0 +1,153 @@
+package ru.yandex.practicum.filmorate.storage.film.buffer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static java.nio.file.StandardOpenOption.*;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class LikeJournal {
+    private static final char LIKE = '+';
+    private static final char UNLIKE = '-';
+    @Value("${filmorate.likes.write-behind.journal-path:}")
+    private final String journalPath;
+    @Value("${filmorate.likes.write-behind.journal-force:ALWAYS}")
+    private final ForceMode forceMode;
+    private FileChannel channel;
+    private boolean unforced;
+
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+
+        if (!isEnabled()) {
+            return;
+        }
+
+        final Path path = Paths.get(journalPath);
+
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        channel = FileChannel.open(path, CREATE, WRITE, APPEND);
+
+        log.info("Журнал отложенных лайков открыт => {}, сброс на диск => {}", path.toAbsolutePath(), forceMode);
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+            channel = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return !journalPath.isBlank();
+    }
+
+    public synchronized void append(boolean liked, long filmId, long userId) {
+
+        if (channel == null) {
+            return;
+        }
+
+        final ByteBuffer entry = StandardCharsets.US_ASCII.encode((liked ? LIKE : UNLIKE) + " " + filmId + " " + userId + "\n");
+
+        try {
+            while (entry.hasRemaining()) {
+                channel.write(entry);
+            }
+
+            if (forceMode == ForceMode.ALWAYS) {
+                channel.force(false);
+            } else {
+                unforced = true;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать лайк в журнал => " + journalPath, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.likes.write-behind.journal-force-interval-ms:100}")
+    public synchronized void forceUnforced() {
+
+        if (channel == null || !unforced) {
+            return;
+        }
+
+        try {
+            channel.force(false);
+            unforced = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось сбросить журнал лайков на диск => " + journalPath, e);
+        }
+    }
+
+    public synchronized void replay(EntryConsumer consumer) throws IOException {
+
+        if (channel == null) {
+            return;
+        }
+
+        final String journal = Files.readString(Paths.get(journalPath), StandardCharsets.US_ASCII);
+
+        for (String line : journal.substring(0, journal.lastIndexOf('\n') + 1).split("\n")) {
+            final String[] entry = line.split(" ");
+
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (entry.length != 3 || entry[0].length() != 1) {
+                log.warn("Пропущена некорректная запись журнала лайков => {}", line);
+                continue;
+            }
+
+            consumer.accept(entry[0].charAt(0) == LIKE, Long.parseLong(entry[1]), Long.parseLong(entry[2]));
+        }
+    }
+
+    public synchronized void truncate() {
+
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.truncate(0);
+            channel.force(false);
+            unforced = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось очистить журнал лайков => " + journalPath, e);
+        }
+    }
+
+    public enum ForceMode {
+        ALWAYS,
+        INTERVAL
+    }
+
+    public interface EntryConsumer {
+        void accept(boolean liked, long filmId, long userId);
+    }
+}
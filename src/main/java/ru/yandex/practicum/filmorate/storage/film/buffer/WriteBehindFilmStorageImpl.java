@@ -0,0 +1,641 @@
+package ru.yandex.practicum.filmorate.storage.film.buffer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.event.UserRemovedEvent;
+import ru.yandex.practicum.filmorate.exception.ConflictException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmLikeEdge;
+import ru.yandex.practicum.filmorate.model.FilmPatch;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+@Slf4j
+@Component("bufferedFilmStorage")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class WriteBehindFilmStorageImpl implements FilmStorage {
+    private static final int LOCK_STRIPES = 64;
+    @Qualifier("filmStorage")
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final LikeJournal likeJournal;
+    private final TransactionTemplate transactionTemplate;
+    @Value("${filmorate.likes.write-behind.enabled:false}")
+    private final boolean enabled;
+    @Value("${filmorate.likes.write-behind.max-pending:10000}")
+    private final int maxPendingLikes;
+    private final StripedLocks locks = new StripedLocks(LOCK_STRIPES);
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private final Map<Long, PendingLikes> pendingLikesByFilmId = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingOperations = new AtomicInteger();
+
+
+    @PostConstruct
+    public void replayJournal() throws IOException {
+
+        final LongHashSet filmIds = filmStorage.getAllFilmIds();
+        final LongHashSet userIds = userStorage.getAllUserIds();
+        final long[] skipped = new long[1];
+
+        likeJournal.replay((liked, filmId, userId) -> {
+            if (!filmIds.contains(filmId) || !userIds.contains(userId)) {
+                skipped[0]++;
+            } else if (liked) {
+                bufferLike(filmId, userId);
+            } else {
+                bufferUnlike(filmId, userId);
+            }
+        });
+
+        if (pendingOperations.get() > 0) {
+            log.info("Из журнала восстановлено отложенных операций с лайками => {}", pendingOperations.get());
+        }
+        if (skipped[0] > 0) {
+            log.warn("Пропущено операций из журнала для удаленных фильмов/пользователей => {}", skipped[0]);
+        }
+
+        flushPendingLikes();
+    }
+
+    @Override
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${filmorate.likes.write-behind.flush-interval-ms:1000}")
+    public void flushPendingLikes() {
+
+        if (pendingOperations.get() == 0) {
+            return;
+        }
+
+        flushLock.writeLock().lock();
+        try {
+            flush();
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Film createFilm(Film film) {
+        return filmStorage.createFilm(film);
+    }
+
+    @Override
+    public void createFilms(List<Film> films) {
+        filmStorage.createFilms(films);
+    }
+
+    @Override
+    public void resetGlobalId() {
+        filmStorage.resetGlobalId();
+    }
+
+    @Override
+    public Film updateFilm(Film film) {
+        return shared(() -> withPendingLikes(filmStorage.updateFilm(film)));
+    }
+
+    @Override
+    public Film patchFilm(long filmId, FilmPatch filmPatch) throws NotFoundException, ConflictException {
+        return shared(() -> withPendingLikes(filmStorage.patchFilm(filmId, filmPatch)));
+    }
+
+    @Override
+    public Film getFilmById(long filmId) {
+        return shared(() -> withPendingLikes(filmStorage.getFilmById(filmId)));
+    }
+
+    @Override
+    public Film getFilmById(long filmId, Set<FilmField> fields) {
+        return shared(() -> withPendingLikes(filmStorage.getFilmById(filmId, fields)));
+    }
+
+    @Override
+    public Collection<Film> getAllFilm() {
+        return shared(() -> withPendingLikes(filmStorage.getAllFilm()));
+    }
+
+    @Override
+    public Collection<Film> getAllFilm(Set<FilmField> fields) {
+        return shared(() -> withPendingLikes(filmStorage.getAllFilm(fields)));
+    }
+
+    @Override
+    public List<Film> getFilmPage(long afterId, int limit) {
+        return shared(() -> withPendingLikes(filmStorage.getFilmPage(afterId, limit)));
+    }
+
+    @Override
+    public List<Film> getFilmPage(long afterId, int limit, Set<FilmField> fields) {
+        return shared(() -> withPendingLikes(filmStorage.getFilmPage(afterId, limit, fields)));
+    }
+
+    @Override
+    public void streamAllFilm(Consumer<Film> consumer) {
+        filmStorage.streamAllFilm(film -> consumer.accept(withPendingLikes(film)));
+    }
+
+    @Override
+    public Collection<Film> getFilmByPopular(int count) {
+        return exclusive(() -> filmStorage.getFilmByPopular(count));
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Long> filmIds) {
+        return shared(() -> withPendingLikes(filmStorage.getFilmsByIds(filmIds)));
+    }
+
+    @Override
+    public List<Film> getFilmsByNamesOrDescriptions(Collection<String> names, Collection<String> descriptions) {
+        return filmStorage.getFilmsByNamesOrDescriptions(names, descriptions);
+    }
+
+    @Override
+    public Map<Long, Long> getAllFilmLikesCount() {
+
+        return shared(() -> {
+
+            final Map<Long, Long> likesCountByFilmId = filmStorage.getAllFilmLikesCount();
+
+            pendingLikesByFilmId.keySet().forEach(filmId -> likesCountByFilmId
+                    .computeIfPresent(filmId, (id, likesCount) -> likesCount + pendingLikesDelta(filmId)));
+
+            return likesCountByFilmId;
+        });
+    }
+
+    @Override
+    public LongHashSet getAllFilmIds() {
+        return filmStorage.getAllFilmIds();
+    }
+
+    @Override
+    public long getFilmLikesCount(long filmId) throws NotFoundException {
+        return shared(() -> filmStorage.getFilmLikesCount(filmId) + pendingLikesDelta(filmId));
+    }
+
+    @Override
+    public List<Long> getFilmLikePage(long filmId, long afterUserId, int limit) {
+
+        return shared(() -> {
+
+            final PendingLikes pending = copyOfPendingLikes(filmId);
+
+            if (pending == null) {
+                return filmStorage.getFilmLikePage(filmId, afterUserId, limit);
+            }
+
+            final List<Long> userIds = new ArrayList<>();
+
+            filmStorage.getFilmLikePage(filmId, afterUserId, limit + pending.removed.size())
+                    .stream()
+                    .filter(userId -> !pending.removed.contains(userId.longValue()))
+                    .forEach(userIds::add);
+
+            pending.added.forEachLong(userId -> {
+                if (userId > afterUserId) {
+                    userIds.add(userId);
+                }
+            });
+
+            Collections.sort(userIds);
+
+            return new ArrayList<>(userIds.subList(0, Math.min(limit, userIds.size())));
+        });
+    }
+
+    @Override
+    public Map<Long, LongHashSet> getFilmLikes(List<Long> filmIds) {
+
+        return shared(() -> {
+
+            final Map<Long, LongHashSet> likesByFilmId = filmStorage.getFilmLikes(filmIds);
+
+            likesByFilmId.forEach((filmId, likes) -> {
+
+                final PendingLikes pending = copyOfPendingLikes(filmId);
+
+                if (pending != null) {
+                    pending.added.forEachLong(likes::add);
+                    pending.removed.forEachLong(likes::remove);
+                }
+            });
+
+            return likesByFilmId;
+        });
+    }
+
+    @Override
+    public void removeFilmById(long filmId) {
+
+        flushLock.writeLock().lock();
+        try {
+            filmStorage.removeFilmById(filmId);
+
+            if (pendingLikesByFilmId.remove(filmId) != null) {
+                flush();
+            }
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAllFilm() {
+
+        flushLock.writeLock().lock();
+        try {
+            filmStorage.removeAllFilm();
+
+            pendingLikesByFilmId.clear();
+            pendingOperations.set(0);
+            likeJournal.truncate();
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void checkFilmById(long filmId) throws NotFoundException {
+        filmStorage.checkFilmById(filmId);
+    }
+
+    @Override
+    public void checkFilmByNameReleaseDateDuration(Film film) throws ConflictException {
+        filmStorage.checkFilmByNameReleaseDateDuration(film);
+    }
+
+    @Override
+    public void checkFilmLikeByUserId(long filmId, long userId, boolean addOrRemove) throws ConflictException, NotFoundException {
+
+        if (!enabled) {
+            filmStorage.checkFilmLikeByUserId(filmId, userId, addOrRemove);
+            return;
+        }
+
+        shared(() -> locks.call(() -> {
+
+            final PendingLikes pending = pendingLikesByFilmId.get(filmId);
+
+            if (pending == null || !pending.added.contains(userId) && !pending.removed.contains(userId)) {
+                filmStorage.checkFilmLikeByUserId(filmId, userId, addOrRemove);
+            } else if (addOrRemove && pending.added.contains(userId)) {
+                throw new ConflictException("У фильма с id => " + filmId
+                        + " уже существует лайк пользователя с id => " + userId);
+            } else if (!addOrRemove && pending.removed.contains(userId)) {
+                throw new NotFoundException("У фильма с id => " + filmId
+                        + " не существует лайка пользователя с id => " + userId);
+            }
+
+            return null;
+
+        }, filmId));
+    }
+
+    @Override
+    public void addUserLikeOnFilm(long filmId, long userId) throws ConflictException, NotFoundException {
+
+        if (!enabled) {
+            filmStorage.addUserLikeOnFilm(filmId, userId);
+            return;
+        }
+
+        shared(() -> locks.call(() -> {
+
+            final PendingLikes pending = pendingLikesByFilmId.get(filmId);
+
+            if (pending != null && pending.added.contains(userId)) {
+                throw new ConflictException("У фильма с id => " + filmId
+                        + " уже существует лайк пользователя с id => " + userId);
+            }
+            if (pending == null || !pending.removed.contains(userId)) {
+                filmStorage.checkFilmById(filmId);
+                userStorage.checkUserById(userId);
+                filmStorage.checkFilmLikeByUserId(filmId, userId, true);
+            }
+
+            bufferLike(filmId, userId);
+            likeJournal.append(true, filmId, userId);
+
+            return null;
+
+        }, filmId));
+
+        flushIfFull();
+    }
+
+    @Override
+    public boolean removeUserLikeOnFilm(long filmId, long userId) {
+
+        if (!enabled) {
+            return filmStorage.removeUserLikeOnFilm(filmId, userId);
+        }
+
+        final boolean removed = shared(() -> locks.call(() -> {
+
+            final PendingLikes pending = pendingLikesByFilmId.get(filmId);
+
+            if (pending != null && pending.removed.contains(userId)) {
+                return false;
+            }
+            if (pending == null || !pending.added.contains(userId)) {
+                try {
+                    filmStorage.checkFilmLikeByUserId(filmId, userId, false);
+                } catch (NotFoundException e) {
+                    return false;
+                }
+            }
+
+            bufferUnlike(filmId, userId);
+            likeJournal.append(false, filmId, userId);
+
+            return true;
+
+        }, filmId));
+
+        if (removed) {
+            flushIfFull();
+        }
+
+        return removed;
+    }
+
+    @Override
+    public Map<Long, Long> addUserLikesOnFilms(List<FilmLikeEdge> likes) {
+        return exclusive(() -> filmStorage.addUserLikesOnFilms(likes));
+    }
+
+    @Override
+    public Map<Long, Long> removeUserLikesOnFilms(List<FilmLikeEdge> likes) {
+        return exclusive(() -> filmStorage.removeUserLikesOnFilms(likes));
+    }
+
+    @Override
+    public int recalculateLikesCount() {
+        return exclusive(filmStorage::recalculateLikesCount);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserRemoved(UserRemovedEvent event) {
+
+        flushLock.writeLock().lock();
+        try {
+            if (event.getUserId() == null) {
+                pendingLikesByFilmId.clear();
+            } else {
+                pendingLikesByFilmId.values().forEach(pending -> {
+                    pending.added.remove(event.getUserId().longValue());
+                    pending.removed.remove(event.getUserId().longValue());
+                });
+            }
+
+            flush();
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    private void bufferLike(long filmId, long userId) {
+
+        final PendingLikes pending = pendingLikesByFilmId.computeIfAbsent(filmId, id -> new PendingLikes());
+
+        if (!pending.removed.remove(userId)) {
+            pending.added.add(userId);
+        }
+
+        pendingOperations.incrementAndGet();
+        removeIfEmpty(filmId, pending);
+    }
+
+    private void bufferUnlike(long filmId, long userId) {
+
+        final PendingLikes pending = pendingLikesByFilmId.computeIfAbsent(filmId, id -> new PendingLikes());
+
+        if (!pending.added.remove(userId)) {
+            pending.removed.add(userId);
+        }
+
+        pendingOperations.incrementAndGet();
+        removeIfEmpty(filmId, pending);
+    }
+
+    private void removeIfEmpty(long filmId, PendingLikes pending) {
+
+        if (pending.added.isEmpty() && pending.removed.isEmpty()) {
+            pendingLikesByFilmId.remove(filmId, pending);
+        }
+    }
+
+    private void flushIfFull() {
+
+        if (pendingOperations.get() >= maxPendingLikes) {
+            flushPendingLikes();
+        }
+    }
+
+    private void flush() {
+
+        if (pendingOperations.get() == 0) {
+            return;
+        }
+
+        final List<FilmLikeEdge> likes = new ArrayList<>();
+        final List<FilmLikeEdge> unlikes = new ArrayList<>();
+
+        pendingLikesByFilmId.forEach((filmId, pending) -> {
+            pending.added.forEachLong(userId -> likes.add(makeEdge(filmId, userId)));
+            pending.removed.forEachLong(userId -> unlikes.add(makeEdge(filmId, userId)));
+        });
+
+        try {
+            if (!likes.isEmpty() || !unlikes.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (!unlikes.isEmpty()) {
+                        filmStorage.removeUserLikesOnFilms(unlikes);
+                    }
+                    if (!likes.isEmpty()) {
+                        filmStorage.addUserLikesOnFilms(likes);
+                    }
+                });
+            }
+        } catch (DataAccessException e) {
+            log.error("Не удалось записать отложенные лайки пакетом, запись по одному => {}", e.getMessage());
+
+            if (!flushEdgeByEdge(likes, unlikes)) {
+                pendingOperations.set(pendingLikesByFilmId.values()
+                        .stream()
+                        .mapToInt(pending -> pending.added.size() + pending.removed.size())
+                        .sum());
+
+                log.warn("Отложенные лайки оставлены в буфере и журнале до следующей записи => {}", pendingOperations.get());
+                return;
+            }
+        }
+
+        pendingLikesByFilmId.clear();
+        pendingOperations.set(0);
+        likeJournal.truncate();
+
+        log.debug("Отложенные лайки записаны: добавлено => {}, удалено => {}", likes.size(), unlikes.size());
+    }
+
+    private boolean flushEdgeByEdge(List<FilmLikeEdge> likes, List<FilmLikeEdge> unlikes) {
+
+        for (FilmLikeEdge unlike : unlikes) {
+            try {
+                filmStorage.removeUserLikeOnFilm(unlike.getFilmId(), unlike.getUserId());
+            } catch (DataAccessException e) {
+                log.error("Отложенное удаление лайка фильма с id => {} пользователем c id => {} не записано => {}",
+                        unlike.getFilmId(), unlike.getUserId(), e.getMessage());
+                return false;
+            }
+
+            discardPending(unlike);
+        }
+
+        for (FilmLikeEdge like : likes) {
+            try {
+                filmStorage.addUserLikeOnFilm(like.getFilmId(), like.getUserId());
+            } catch (ConflictException e) {
+                log.debug("Отложенный лайк уже записан => {}", e.getMessage());
+            } catch (NotFoundException | DataIntegrityViolationException e) {
+                log.error("Отложенный лайк фильма с id => {} пользователем c id => {} отброшен => {}",
+                        like.getFilmId(), like.getUserId(), e.getMessage());
+            } catch (DataAccessException e) {
+                log.error("Отложенный лайк фильма с id => {} пользователем c id => {} не записан => {}",
+                        like.getFilmId(), like.getUserId(), e.getMessage());
+                return false;
+            }
+
+            discardPending(like);
+        }
+
+        return true;
+    }
+
+    private void discardPending(FilmLikeEdge edge) {
+
+        final PendingLikes pending = pendingLikesByFilmId.get(edge.getFilmId());
+
+        if (pending != null) {
+            pending.added.remove(edge.getUserId());
+            pending.removed.remove(edge.getUserId());
+            removeIfEmpty(edge.getFilmId(), pending);
+        }
+    }
+
+    private static FilmLikeEdge makeEdge(long filmId, long userId) {
+
+        return FilmLikeEdge
+                .builder()
+                .filmId(filmId)
+                .userId(userId)
+                .build();
+    }
+
+    private long pendingLikesDelta(long filmId) {
+
+        final PendingLikes pending = pendingLikesByFilmId.get(filmId);
+
+        if (pending == null) {
+            return 0;
+        }
+
+        return locks.call(() -> (long) pending.added.size() - pending.removed.size(), filmId);
+    }
+
+    private PendingLikes copyOfPendingLikes(long filmId) {
+
+        final PendingLikes pending = pendingLikesByFilmId.get(filmId);
+
+        if (pending == null) {
+            return null;
+        }
+
+        return locks.call(() -> {
+
+            final PendingLikes copy = new PendingLikes();
+
+            pending.added.forEachLong(copy.added::add);
+            pending.removed.forEachLong(copy.removed::add);
+
+            return copy;
+
+        }, filmId);
+    }
+
+    private Film withPendingLikes(Film film) {
+
+        if (film != null && !pendingLikesByFilmId.isEmpty()) {
+            film.setLikesCount(film.getLikesCount() + pendingLikesDelta(film.getId()));
+        }
+
+        return film;
+    }
+
+    private <C extends Collection<Film>> C withPendingLikes(C films) {
+
+        if (!pendingLikesByFilmId.isEmpty()) {
+            films.forEach(this::withPendingLikes);
+        }
+
+        return films;
+    }
+
+    private <T> T shared(Supplier<T> action) {
+
+        if (!enabled) {
+            return action.get();
+        }
+
+        flushLock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    private <T> T exclusive(Supplier<T> action) {
+
+        if (!enabled) {
+            return action.get();
+        }
+
+        flushLock.writeLock().lock();
+        try {
+            flush();
+            return action.get();
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    private static class PendingLikes {
+        private final LongHashSet added = new LongHashSet();
+        private final LongHashSet removed = new LongHashSet();
+    }
+}
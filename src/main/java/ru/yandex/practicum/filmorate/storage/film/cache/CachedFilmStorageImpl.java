@@ -0,0 +1,321 @@
+package ru.yandex.practicum.filmorate.storage.film.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.event.GenreChangedEvent;
+import ru.yandex.practicum.filmorate.event.UserRemovedEvent;
+import ru.yandex.practicum.filmorate.exception.ConflictException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmLikeEdge;
+import ru.yandex.practicum.filmorate.model.FilmPatch;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Primary
+@Component
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class CachedFilmStorageImpl implements FilmStorage {
+    @Qualifier("bufferedFilmStorage")
+    private final FilmStorage filmStorage;
+    private final Cache<Long, Film> filmCache;
+
+    @Override
+    public Film createFilm(Film film) {
+        return filmStorage.createFilm(film);
+    }
+
+    @Override
+    public void createFilms(List<Film> films) {
+        filmStorage.createFilms(films);
+    }
+
+    @Override
+    public void resetGlobalId() {
+        filmStorage.resetGlobalId();
+    }
+
+    @Override
+    public Film updateFilm(Film film) {
+
+        try {
+            return filmStorage.updateFilm(film);
+        } finally {
+            filmCache.invalidate(film.getId());
+        }
+    }
+
+    @Override
+    public Film patchFilm(long filmId, FilmPatch filmPatch) throws NotFoundException, ConflictException {
+
+        try {
+            return filmStorage.patchFilm(filmId, filmPatch);
+        } finally {
+            filmCache.invalidate(filmId);
+        }
+    }
+
+    @Override
+    public Film getFilmById(long filmId) {
+        return copyOf(filmCache.get(filmId, filmStorage::getFilmById));
+    }
+
+    @Override
+    public Film getFilmById(long filmId, Set<FilmField> fields) {
+
+        final Film cached = filmCache.getIfPresent(filmId);
+
+        if (cached != null) {
+            return copyOf(cached);
+        }
+
+        return filmStorage.getFilmById(filmId, fields);
+    }
+
+    @Override
+    public Collection<Film> getAllFilm() {
+        return filmStorage.getAllFilm();
+    }
+
+    @Override
+    public Collection<Film> getAllFilm(Set<FilmField> fields) {
+        return filmStorage.getAllFilm(fields);
+    }
+
+    @Override
+    public List<Film> getFilmPage(long afterId, int limit) {
+        return filmStorage.getFilmPage(afterId, limit);
+    }
+
+    @Override
+    public List<Film> getFilmPage(long afterId, int limit, Set<FilmField> fields) {
+        return filmStorage.getFilmPage(afterId, limit, fields);
+    }
+
+    @Override
+    public void streamAllFilm(Consumer<Film> consumer) {
+        filmStorage.streamAllFilm(consumer);
+    }
+
+    @Override
+    public Collection<Film> getFilmByPopular(int count) {
+        return filmStorage.getFilmByPopular(count);
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Long> filmIds) {
+
+        if (filmIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        final Map<Long, Film> films = filmCache.getAll(filmIds, this::loadFilms);
+
+        return filmIds
+                .stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .map(CachedFilmStorageImpl::copyOf)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> getFilmsByNamesOrDescriptions(Collection<String> names, Collection<String> descriptions) {
+        return filmStorage.getFilmsByNamesOrDescriptions(names, descriptions);
+    }
+
+    @Override
+    public Map<Long, Long> getAllFilmLikesCount() {
+        return filmStorage.getAllFilmLikesCount();
+    }
+
+    @Override
+    public LongHashSet getAllFilmIds() {
+        return filmStorage.getAllFilmIds();
+    }
+
+    @Override
+    public long getFilmLikesCount(long filmId) throws NotFoundException {
+
+        final Film film = filmCache.getIfPresent(filmId);
+
+        return film != null ? film.getLikesCount() : filmStorage.getFilmLikesCount(filmId);
+    }
+
+    @Override
+    public List<Long> getFilmLikePage(long filmId, long afterUserId, int limit) {
+        return filmStorage.getFilmLikePage(filmId, afterUserId, limit);
+    }
+
+    @Override
+    public Map<Long, LongHashSet> getFilmLikes(List<Long> filmIds) {
+        return filmStorage.getFilmLikes(filmIds);
+    }
+
+    @Override
+    public void removeFilmById(long filmId) {
+
+        try {
+            filmStorage.removeFilmById(filmId);
+        } finally {
+            filmCache.invalidate(filmId);
+        }
+    }
+
+    @Override
+    public void removeAllFilm() {
+
+        try {
+            filmStorage.removeAllFilm();
+        } finally {
+            filmCache.invalidateAll();
+        }
+    }
+
+    @Override
+    public void checkFilmById(long filmId) throws NotFoundException {
+
+        if (filmCache.getIfPresent(filmId) == null) {
+            filmStorage.checkFilmById(filmId);
+        }
+    }
+
+    @Override
+    public void checkFilmByNameReleaseDateDuration(Film film) throws ConflictException {
+        filmStorage.checkFilmByNameReleaseDateDuration(film);
+    }
+
+    @Override
+    public void checkFilmLikeByUserId(long filmId, long userId, boolean addOrRemove) throws ConflictException, NotFoundException {
+        filmStorage.checkFilmLikeByUserId(filmId, userId, addOrRemove);
+    }
+
+    @Override
+    public void addUserLikeOnFilm(long filmId, long userId) throws ConflictException, NotFoundException {
+
+        filmStorage.addUserLikeOnFilm(filmId, userId);
+
+        filmCache.invalidate(filmId);
+    }
+
+    @Override
+    public boolean removeUserLikeOnFilm(long filmId, long userId) {
+
+        final boolean removed = filmStorage.removeUserLikeOnFilm(filmId, userId);
+
+        if (removed) {
+            filmCache.invalidate(filmId);
+        }
+
+        return removed;
+    }
+
+    @Override
+    public Map<Long, Long> addUserLikesOnFilms(List<FilmLikeEdge> likes) {
+
+        final Map<Long, Long> addedLikesByFilmId = filmStorage.addUserLikesOnFilms(likes);
+
+        invalidateAfterCommit(addedLikesByFilmId.keySet());
+
+        return addedLikesByFilmId;
+    }
+
+    @Override
+    public Map<Long, Long> removeUserLikesOnFilms(List<FilmLikeEdge> likes) {
+
+        final Map<Long, Long> removedLikesByFilmId = filmStorage.removeUserLikesOnFilms(likes);
+
+        invalidateAfterCommit(removedLikesByFilmId.keySet());
+
+        return removedLikesByFilmId;
+    }
+
+    @Override
+    public int recalculateLikesCount() {
+        return filmStorage.recalculateLikesCount();
+    }
+
+    @Override
+    public void flushPendingLikes() {
+        filmStorage.flushPendingLikes();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onGenreChanged(GenreChangedEvent event) {
+
+        if (event.getFilmId() != null) {
+            filmCache.invalidate(event.getFilmId());
+
+        } else if (event.getGenreId() == null) {
+            filmCache.invalidateAll();
+
+        } else {
+            filmCache.asMap().values().removeIf(film -> film.getGenres()
+                    .stream()
+                    .anyMatch(genre -> event.getGenreId().equals(genre.getId())));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserRemoved(UserRemovedEvent event) {
+        filmCache.asMap().values().removeIf(film -> film.getLikesCount() > 0);
+    }
+
+    private void invalidateAfterCommit(Set<Long> filmIds) {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            filmCache.invalidateAll(filmIds);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                filmCache.invalidateAll(filmIds);
+            }
+        });
+    }
+
+    private Map<Long, Film> loadFilms(Iterable<? extends Long> filmIds) {
+
+        final List<Long> missingFilmIds = new ArrayList<>();
+
+        filmIds.forEach(missingFilmIds::add);
+
+        return filmStorage.getFilmsByIds(missingFilmIds)
+                .stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+    }
+
+    private static Film copyOf(Film film) {
+
+        final Film copy = Film
+                .builder()
+                .id(film.getId())
+                .name(film.getName())
+                .description(film.getDescription())
+                .duration(film.getDuration())
+                .releaseDate(film.getReleaseDate())
+                .rate(film.getRate())
+                .mpa(film.getMpa())
+                .likesCount(film.getLikesCount())
+                .build();
+
+        copy.getGenres().addAll(film.getGenres());
+
+        return copy;
+    }
+}
@@ -0,0 +1,143 @@
+package ru.yandex.practicum.filmorate.storage.film.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.event.GenreChangedEvent;
+import ru.yandex.practicum.filmorate.exception.ConflictException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.film.GenreStorage;
+
+import javax.annotation.PostConstruct;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.Consumer;
+
+@Primary
+@Component
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class CachedGenreStorageImpl implements GenreStorage {
+    @Qualifier("dbGenreStorageImpl")
+    private final GenreStorage genreStorage;
+    private volatile Map<Integer, Genre> genreById = Map.of();
+
+    @PostConstruct
+    public synchronized void reload() {
+
+        final Map<Integer, Genre> loaded = new TreeMap<>();
+
+        genreStorage.getGenreList().forEach(genre -> loaded.put(genre.getId(), genre));
+
+        genreById = Collections.unmodifiableMap(loaded);
+    }
+
+    @Override
+    public Genre createGenre(Genre genre) {
+
+        final Genre createdGenre = genreStorage.createGenre(genre);
+
+        swap(genres -> genres.put(createdGenre.getId(), createdGenre));
+
+        return createdGenre;
+    }
+
+    @Override
+    public Genre updateGenre(Genre genre) {
+
+        final Genre updatedGenre = genreStorage.updateGenre(genre);
+
+        swap(genres -> genres.put(updatedGenre.getId(), updatedGenre));
+
+        return updatedGenre;
+    }
+
+    @Override
+    public void addGenreOnFilm(int genreId, long filmId) {
+        genreStorage.addGenreOnFilm(genreId, filmId);
+    }
+
+    @Override
+    public void removeGenreOnFilm(int genreId, long filmId) {
+        genreStorage.removeGenreOnFilm(genreId, filmId);
+    }
+
+    @Override
+    public void checkGenreOnFilm(int genreId, long filmId, boolean addOrRemove) throws NotFoundException, ConflictException {
+        genreStorage.checkGenreOnFilm(genreId, filmId, addOrRemove);
+    }
+
+    @Override
+    public List<Genre> getGenreList() {
+        return new ArrayList<>(genreById.values());
+    }
+
+    @Override
+    public Genre getGenreById(int id) throws NotFoundException {
+
+        final Genre genre = genreById.get(id);
+
+        if (genre == null) {
+            throw new NotFoundException("Жанр по id => " + id + " не существует");
+        }
+
+        return genre;
+    }
+
+    @Override
+    public void checkGenreById(int id) throws NotFoundException {
+        getGenreById(id);
+    }
+
+    @Override
+    public void checkGenre(Genre genre) throws NotFoundException {
+
+        for (Genre storedGenre : genreById.values()) {
+            if (storedGenre.getName().equals(genre.getName()) && !storedGenre.getId().equals(genre.getId())) {
+                throw new NotFoundException("Жанр => " + genre.getName() + " уже существует по id => " + storedGenre.getId());
+            }
+        }
+    }
+
+    @Override
+    public void removeGenreById(int id) {
+
+        genreStorage.removeGenreById(id);
+
+        swap(genres -> genres.remove(id));
+    }
+
+    @Override
+    public void removeAllGenre() {
+
+        genreStorage.removeAllGenre();
+
+        swap(Map::clear);
+    }
+
+    @Override
+    public Genre makeGenre(ResultSet resultSet, int rowNum) throws SQLException {
+        return genreStorage.makeGenre(resultSet, rowNum);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onGenreChanged(GenreChangedEvent event) {
+
+        if (event.getGenreId() == null && event.getFilmId() == null) {
+            reload();
+        }
+    }
+
+    private synchronized void swap(Consumer<Map<Integer, Genre>> change) {
+
+        final Map<Integer, Genre> genres = new TreeMap<>(genreById);
+
+        change.accept(genres);
+
+        genreById = Collections.unmodifiableMap(genres);
+    }
+}
@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.storage.film.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.film.MpaStorage;
+
+import javax.annotation.PostConstruct;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+@Primary
+@Component
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class CachedMpaStorageImpl implements MpaStorage {
+    @Qualifier("dbMpaStorageImpl")
+    private final MpaStorage mpaStorage;
+    private volatile Map<Integer, Mpa> mpaById = Map.of();
+
+    @PostConstruct
+    public synchronized void reload() {
+
+        final Map<Integer, Mpa> loaded = new TreeMap<>();
+
+        mpaStorage.getMpaList().forEach(mpa -> loaded.put(mpa.getId(), mpa));
+
+        mpaById = Collections.unmodifiableMap(loaded);
+    }
+
+    @Override
+    public List<Mpa> getMpaList() {
+        return new ArrayList<>(mpaById.values());
+    }
+
+    @Override
+    public Mpa getMpaById(int id) throws NotFoundException {
+
+        final Mpa mpa = mpaById.get(id);
+
+        if (mpa == null) {
+            throw new NotFoundException("Рейтинг по id => " + id + " не существует");
+        }
+
+        return mpa;
+    }
+
+    @Override
+    public Mpa makeMpa(ResultSet resultSet, int rowNum) throws SQLException {
+        return mpaStorage.makeMpa(resultSet, rowNum);
+    }
+}
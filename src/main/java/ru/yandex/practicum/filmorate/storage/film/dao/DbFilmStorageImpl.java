@@ -2,34 +2,68 @@ package ru.yandex.practicum.filmorate.storage.film.dao;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.event.GenreChangedEvent;
+import ru.yandex.practicum.filmorate.event.UserRemovedEvent;
 import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmLikeEdge;
+import ru.yandex.practicum.filmorate.model.FilmPatch;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
+import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.film.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.film.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.film.index.FilmLikeCounters;
 
 
+import javax.annotation.PreDestroy;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static ru.yandex.practicum.filmorate.model.FilmField.*;
 
 
 @Repository("filmStorage")
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 public class DbFilmStorageImpl implements FilmStorage {
+    private static final int BATCH_SIZE = 1000;
+    private static final int STREAM_FETCH_SIZE = 500;
+    private static final String LIKE_FILM_FK = "USER_FILM_LIKE_FILM_FK";
+    private static final String LIKE_USER_FK = "USER_FILM_LIKE_USER_FK";
+    private static final Set<FilmField> ALL_FIELDS = Collections.unmodifiableSet(EnumSet.allOf(FilmField.class));
     private final JdbcTemplate jdbcTemplate;
-    private final MpaStorage dbMpaStorageImpl;
-    private final GenreStorage dbGenreStorageImpl;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final MpaStorage mpaStorage;
+    private final GenreStorage genreStorage;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final FilmLikeCounters filmLikeCounters;
+    private final TransactionTemplate transactionTemplate;
 
     @Override
+    @Transactional
     public Film createFilm(Film film) {
 
         final SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate)
@@ -41,59 +75,132 @@ public class DbFilmStorageImpl implements FilmStorage {
         filmToMap.put("description", film.getDescription());
         filmToMap.put("release_date", film.getReleaseDate());
         filmToMap.put("duration", film.getDuration());
+        filmToMap.put("likes_count", 0);
 
         final long id = simpleJdbcInsert.executeAndReturnKey(filmToMap).longValue();
         film.setId(id);
+        film.setLikesCount(0);
 
         if (film.getMpa() != null) {
 
+            final Mpa mpa = mpaStorage.getMpaById(film.getMpa().getId());
+
             jdbcTemplate.update(
                     "INSERT INTO film_mpa " +
                             "(film_id, mpa_id) " +
                             "VALUES (?, ?)",
-                    film.getId(), film.getMpa().getId());
+                    film.getId(), mpa.getId());
+
+            film.setMpa(mpa);
+        }
 
-            final String sqlQueryMpaByFilmId =
-                    "SELECT id, name " +
-                            "FROM mpas " +
-                            "JOIN film_mpa on mpas.id = film_mpa.mpa_id " +
-                            "WHERE film_mpa.film_id = ? " +
-                            "ORDER BY id";
+        saveGenres(film, Set.of());
 
-            film.setMpa(
-                    jdbcTemplate.queryForObject(sqlQueryMpaByFilmId,
-                            dbMpaStorageImpl::makeMpa,
-                            film.getId()));
+        return film;
+    }
+
+    @Override
+    @Transactional
+    public void createFilms(List<Film> films) {
+
+        if (films.isEmpty()) {
+            return;
         }
 
-        if (!film.getGenres().isEmpty()) {
+        final String sqlInsertFilm =
+                "INSERT INTO films " +
+                        "(name, description, release_date, duration, likes_count) " +
+                        "VALUES (?, ?, ?, ?, 0)";
+
+        for (int from = 0; from < films.size(); from += BATCH_SIZE) {
+
+            final List<Film> batch = films.subList(from, Math.min(from + BATCH_SIZE, films.size()));
+
+            jdbcTemplate.execute(
+                    connection -> connection.prepareStatement(sqlInsertFilm, new String[]{"id"}),
+                    (PreparedStatementCallback<Void>) ps -> {
+                        for (Film film : batch) {
+                            ps.setString(1, film.getName());
+                            ps.setString(2, film.getDescription());
+                            ps.setObject(3, film.getReleaseDate());
+                            ps.setInt(4, film.getDuration());
+                            ps.addBatch();
+                        }
+
+                        ps.executeBatch();
+
+                        try (ResultSet keys = ps.getGeneratedKeys()) {
+                            for (Film film : batch) {
+                                keys.next();
+                                film.setId(keys.getLong(1));
+                            }
+                        }
+
+                        return null;
+                    });
+        }
 
-            film.getGenres().forEach((genre) -> jdbcTemplate.update(
-                    "INSERT INTO film_genre " +
-                            "(film_id, genre_id) " +
-                            "VALUES (?, ?)",
-                    film.getId(), genre.getId()));
+        final List<Film> filmsWithMpa = new ArrayList<>();
+        final List<long[]> filmGenres = new ArrayList<>();
+        final Map<Integer, Genre> genresById = new HashMap<>();
 
-            film.getGenres().clear();
+        genreStorage.getGenreList().forEach(genre -> genresById.put(genre.getId(), genre));
+
+        for (Film film : films) {
+            film.setLikesCount(0);
+
+            if (film.getMpa() != null) {
+                film.setMpa(mpaStorage.getMpaById(film.getMpa().getId()));
+                filmsWithMpa.add(film);
+            }
 
-            final String sqlGenresByFilmId =
-                    "SELECT id, name " +
-                            "FROM genres " +
-                            "JOIN film_genre on genres.id = film_genre.genre_id " +
-                            "WHERE film_genre.film_id = ?" +
-                            "ORDER BY id";
+            final Set<Integer> genreIds = new TreeSet<>();
 
             film.getGenres()
-                    .addAll(
-                            jdbcTemplate.query(sqlGenresByFilmId,
-                                    dbGenreStorageImpl::makeGenre,
-                                    film.getId()));
+                    .stream()
+                    .map(Genre::getId)
+                    .filter(Objects::nonNull)
+                    .forEach(genreIds::add);
+
+            film.getGenres().clear();
+
+            for (Integer genreId : genreIds) {
+                final Genre genre = genresById.get(genreId);
+
+                if (genre == null) {
+                    throw new NotFoundException("Жанр по id => " + genreId + " не существует");
+                }
+
+                film.getGenres().add(genre);
+                filmGenres.add(new long[]{film.getId(), genreId});
+            }
         }
 
-        return film;
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO film_mpa " +
+                        "(film_id, mpa_id) " +
+                        "VALUES (?, ?)",
+                filmsWithMpa,
+                BATCH_SIZE,
+                (ps, film) -> {
+                    ps.setLong(1, film.getId());
+                    ps.setInt(2, film.getMpa().getId());
+                });
+
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO film_genre " +
+                        "(film_id, genre_id) " +
+                        "VALUES (?, ?)",
+                filmGenres,
+                BATCH_SIZE,
+                (ps, filmGenre) -> {
+                    ps.setLong(1, filmGenre[0]);
+                    ps.setInt(2, (int) filmGenre[1]);
+                });
     }
 
     @Override
+    @Transactional
     public Film updateFilm(Film film) {
 
         final String sqlUpdateFilm =
@@ -109,77 +216,96 @@ public class DbFilmStorageImpl implements FilmStorage {
                 film.getId());
 
         if (film.getMpa() != null) {
+            saveMpa(film, null);
+        }
 
-            jdbcTemplate.update(
-                    "DELETE FROM film_mpa " +
-                            "WHERE film_id = ?",
-                    film.getId());
+        final String sqlGenreIdsByFilmId =
+                "SELECT genre_id " +
+                        "FROM film_genre " +
+                        "WHERE film_id = ?";
 
-            jdbcTemplate.update(
-                    "INSERT INTO film_mpa " +
-                            "(film_id, mpa_id) " +
-                            "VALUES (?, ?)",
-                    film.getId(), film.getMpa().getId());
+        saveGenres(film,
+                new HashSet<>(
+                        jdbcTemplate.queryForList(sqlGenreIdsByFilmId,
+                                Integer.class,
+                                film.getId())));
 
-            final String sqlQueryMpaByFilmId =
-                    "SELECT id, name " +
-                            "FROM mpas " +
-                            "JOIN film_mpa on mpas.id = film_mpa.mpa_id " +
-                            "WHERE film_mpa.film_id = ? " +
-                            "ORDER BY id";
+        film.setLikesCount(getFilmLikesCount(film.getId()));
 
-            film
-                    .setMpa(
-                            jdbcTemplate.queryForObject(sqlQueryMpaByFilmId,
-                                    dbMpaStorageImpl::makeMpa,
-                                    film.getId()));
+        return film;
+    }
+
+    @Override
+    @Transactional
+    public Film patchFilm(long filmId, FilmPatch filmPatch) throws NotFoundException, ConflictException {
+
+        final Film film = getFilmById(filmId);
+
+        final Map<String, Object> changedColumns = new LinkedHashMap<>();
+
+        if (filmPatch.getName() != null && !filmPatch.getName().equals(film.getName())) {
+            changedColumns.put("name", filmPatch.getName());
+            film.setName(filmPatch.getName());
+        }
+        if (filmPatch.getDescription() != null && !filmPatch.getDescription().equals(film.getDescription())) {
+            changedColumns.put("description", filmPatch.getDescription());
+            film.setDescription(filmPatch.getDescription());
+        }
+        if (filmPatch.getDuration() != null && filmPatch.getDuration() != film.getDuration()) {
+            changedColumns.put("duration", filmPatch.getDuration());
+            film.setDuration(filmPatch.getDuration());
+        }
+        if (filmPatch.getReleaseDate() != null && !filmPatch.getReleaseDate().equals(film.getReleaseDate())) {
+            changedColumns.put("release_date", filmPatch.getReleaseDate());
+            film.setReleaseDate(filmPatch.getReleaseDate());
+        }
+        if (filmPatch.getRate() != null && filmPatch.getRate() != film.getRate()) {
+            changedColumns.put("rate", filmPatch.getRate());
+            film.setRate(filmPatch.getRate());
         }
 
+        if (changedColumns.containsKey("name")
+                || changedColumns.containsKey("duration")
+                || changedColumns.containsKey("release_date")) {
+            checkFilmByNameReleaseDateDuration(film);
+        }
 
-        jdbcTemplate.update(
-                "DELETE FROM film_genre " +
-                        "WHERE film_id = ?",
-                film.getId());
+        if (!changedColumns.isEmpty()) {
 
-        if (!film.getGenres().isEmpty()) {
+            final StringJoiner setClause = new StringJoiner(", ");
 
+            changedColumns.keySet().forEach(column -> setClause.add(column + " = ?"));
 
+            final List<Object> params = new ArrayList<>(changedColumns.values());
+            params.add(filmId);
 
-            film.getGenres().forEach(genre -> jdbcTemplate.update(
-                    "INSERT INTO film_genre " +
-                            "(film_id, genre_id) " +
-                            "VALUES (?, ?)",
-                    film.getId(), genre.getId()));
+            jdbcTemplate.update(
+                    "UPDATE films " +
+                            "SET " + setClause + " " +
+                            "WHERE id = ?",
+                    params.toArray());
+        }
 
-            film.getGenres().clear();
+        if (filmPatch.getMpa() != null
+                && (film.getMpa() == null || film.getMpa().getId() != filmPatch.getMpa().getId())) {
 
-            final String sqlGenresByFilmId =
-                    "SELECT id, name " +
-                            "FROM genres " +
-                            "JOIN film_genre on genres.id = film_genre.genre_id " +
-                            "WHERE film_genre.film_id = ? " +
-                            "ORDER BY id";
+            final Integer storedMpaId = film.getMpa() == null ? null : film.getMpa().getId();
 
-            film.getGenres()
-                    .addAll(
-                            jdbcTemplate.query(sqlGenresByFilmId,
-                                    dbGenreStorageImpl::makeGenre,
-                                    film.getId()));
+            film.setMpa(filmPatch.getMpa());
+
+            saveMpa(film, storedMpaId);
         }
 
+        if (filmPatch.getGenres() != null) {
 
-        if (!film.getUserFilmLike().isEmpty()) {
+            final Set<Integer> storedGenreIds = new HashSet<>();
 
-            jdbcTemplate.update(
-                    "DELETE FROM user_film_like " +
-                            "WHERE film_id = ?",
-                    film.getId());
+            film.getGenres().forEach(genre -> storedGenreIds.add(genre.getId()));
 
-            film.getUserFilmLike().forEach(like -> jdbcTemplate.update(
-                    "INSERT INTO user_film_like " +
-                            "(user_id, film_id) " +
-                            "VALUES (?, ?)",
-                    film.getId(), like));
+            film.getGenres().clear();
+            film.getGenres().addAll(filmPatch.getGenres());
+
+            saveGenres(film, storedGenreIds);
         }
 
         return film;
@@ -195,44 +321,272 @@ public class DbFilmStorageImpl implements FilmStorage {
 
     @Override
     public Film getFilmById(long filmId) {
+        return getFilmById(filmId, ALL_FIELDS);
+    }
 
-        checkFilmById(filmId);
+    @Override
+    public Film getFilmById(long filmId, Set<FilmField> fields) {
 
         final String sql =
-                "SELECT * " +
+                "SELECT " + columnsOf(fields) + " " +
                         "FROM films " +
                         "WHERE id = ?";
 
-        return jdbcTemplate.queryForObject(sql,
-                this::makeFilm,
-                filmId);
+        final List<Film> films = makeFilms(
+                jdbcTemplate.query(sql,
+                        (rs, rowNumber) -> makeFilm(rs, fields),
+                        filmId),
+                fields);
+
+        if (films.isEmpty()) {
+            throw new NotFoundException("Такой фильм с id => " + filmId + " не существует");
+        }
+
+        return films.get(0);
     }
 
     @Override
     public Collection<Film> getAllFilm() {
+        return getAllFilm(ALL_FIELDS);
+    }
+
+    @Override
+    public Collection<Film> getAllFilm(Set<FilmField> fields) {
+
+        final String sql =
+                "SELECT " + columnsOf(fields) + " " +
+                        "FROM films " +
+                        "ORDER BY id";
+
+        return makeFilms(
+                jdbcTemplate.query(sql,
+                        (rs, rowNumber) -> makeFilm(rs, fields)),
+                fields);
+    }
+
+    @Override
+    public List<Film> getFilmPage(long afterId, int limit) {
+        return getFilmPage(afterId, limit, ALL_FIELDS);
+    }
+
+    @Override
+    public List<Film> getFilmPage(long afterId, int limit, Set<FilmField> fields) {
+
+        final String sql =
+                "SELECT " + columnsOf(fields) + " " +
+                        "FROM films " +
+                        "WHERE id > ? " +
+                        "ORDER BY id " +
+                        "LIMIT ?";
+
+        return makeFilms(
+                jdbcTemplate.query(sql,
+                        (rs, rowNumber) -> makeFilm(rs, fields),
+                        afterId, limit),
+                fields);
+    }
+
+    @Override
+    public void streamAllFilm(Consumer<Film> consumer) {
 
         final String sql =
                 "SELECT * " +
-                        "FROM films";
+                        "FROM films " +
+                        "ORDER BY id";
 
-        return jdbcTemplate.query(sql,
-                this::makeFilm);
+        final List<Film> chunk = new ArrayList<>(STREAM_FETCH_SIZE);
+
+        jdbcTemplate.query(connection -> {
+                    final PreparedStatement statement = connection.prepareStatement(sql,
+                            ResultSet.TYPE_FORWARD_ONLY,
+                            ResultSet.CONCUR_READ_ONLY);
+                    statement.setFetchSize(STREAM_FETCH_SIZE);
+                    return statement;
+                },
+                (RowCallbackHandler) rs -> {
+                    chunk.add(makeFilm(rs, rs.getRow()));
+
+                    if (chunk.size() == STREAM_FETCH_SIZE) {
+                        makeFilms(chunk).forEach(consumer);
+                        chunk.clear();
+                    }
+                });
+
+        makeFilms(chunk).forEach(consumer);
     }
 
     @Override
     public Collection<Film> getFilmByPopular(int count) {
 
         final String sql =
-                "SELECT f.id, f.name, f.description, f.duration, f.release_date, f.rate " +
-                        "FROM films AS f " +
-                        "LEFT JOIN user_film_like AS ufl ON f.id = ufl.film_id " +
-                        "GROUP BY f.id " +
-                        "ORDER BY count(ufl.film_id) DESC " +
+                "SELECT * " +
+                        "FROM films " +
+                        "ORDER BY likes_count DESC, id " +
                         "LIMIT ?";
 
-        return jdbcTemplate.query(sql,
-                this::makeFilm,
-                count);
+        return makeFilms(
+                jdbcTemplate.query(sql,
+                        this::makeFilm,
+                        count));
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Long> filmIds) {
+
+        final String sql =
+                "SELECT * " +
+                        "FROM films " +
+                        "WHERE id IN (:ids)";
+
+        final Map<Long, Film> filmsById = new HashMap<>();
+
+        for (int from = 0; from < filmIds.size(); from += BATCH_SIZE) {
+
+            makeFilms(
+                    namedParameterJdbcTemplate.query(sql,
+                            new MapSqlParameterSource(
+                                    "ids", filmIds.subList(from, Math.min(from + BATCH_SIZE, filmIds.size()))),
+                            this::makeFilm))
+                    .forEach(film -> filmsById.put(film.getId(), film));
+        }
+
+        final List<Film> films = new ArrayList<>(filmsById.size());
+
+        filmIds.forEach(filmId -> {
+            final Film film = filmsById.get(filmId);
+
+            if (film != null) {
+                films.add(film);
+            }
+        });
+
+        return films;
+    }
+
+    @Override
+    public List<Film> getFilmsByNamesOrDescriptions(Collection<String> names, Collection<String> descriptions) {
+
+        final String sql =
+                "SELECT id, name, description " +
+                        "FROM films " +
+                        "WHERE name IN (:names) " +
+                        "UNION " +
+                        "SELECT id, name, description " +
+                        "FROM films " +
+                        "WHERE description IN (:descriptions)";
+
+        final List<String> nameList = new ArrayList<>(names);
+        final List<String> descriptionList = new ArrayList<>(descriptions);
+        final List<Film> films = new ArrayList<>();
+
+        for (int from = 0; from < Math.max(nameList.size(), descriptionList.size()); from += BATCH_SIZE) {
+
+            final MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("names", chunkOrNull(nameList, from))
+                    .addValue("descriptions", chunkOrNull(descriptionList, from));
+
+            films.addAll(namedParameterJdbcTemplate.query(sql,
+                    params,
+                    (rs, rowNumber) -> Film
+                            .builder()
+                            .id(rs.getLong("id"))
+                            .name(rs.getString("name"))
+                            .description(rs.getString("description"))
+                            .build()));
+        }
+
+        return films;
+    }
+
+    @Override
+    public Map<Long, Long> getAllFilmLikesCount() {
+
+        final String sql =
+                "SELECT id, likes_count " +
+                        "FROM films";
+
+        final Map<Long, Long> likesCountByFilmId = new HashMap<>();
+
+        jdbcTemplate.query(sql,
+                (RowCallbackHandler) rs -> likesCountByFilmId.put(rs.getLong("id"),
+                        filmLikeCounters.getLikesCount(rs.getLong("id"), rs.getLong("likes_count"))));
+
+        return likesCountByFilmId;
+    }
+
+    @Override
+    public LongHashSet getAllFilmIds() {
+
+        final String sql =
+                "SELECT id " +
+                        "FROM films";
+
+        final LongHashSet filmIds = new LongHashSet();
+
+        jdbcTemplate.query(sql,
+                (RowCallbackHandler) rs -> filmIds.add(rs.getLong("id")));
+
+        return filmIds;
+    }
+
+    @Override
+    public long getFilmLikesCount(long filmId) throws NotFoundException {
+
+        final String sql =
+                "SELECT likes_count " +
+                        "FROM films " +
+                        "WHERE id = ?";
+
+        final List<Long> likesCount = jdbcTemplate.queryForList(sql,
+                Long.class,
+                filmId);
+
+        if (likesCount.isEmpty()) {
+            throw new NotFoundException("Такой фильм с id => " + filmId + " не существует");
+        }
+
+        return filmLikeCounters.getLikesCount(filmId, likesCount.get(0));
+    }
+
+    @Override
+    public List<Long> getFilmLikePage(long filmId, long afterUserId, int limit) {
+
+        final String sql =
+                "SELECT user_id " +
+                        "FROM user_film_like " +
+                        "WHERE film_id = ? " +
+                        "AND user_id > ? " +
+                        "ORDER BY user_id " +
+                        "LIMIT ?";
+
+        return jdbcTemplate.queryForList(sql,
+                Long.class,
+                filmId, afterUserId, limit);
+    }
+
+    @Override
+    public Map<Long, LongHashSet> getFilmLikes(List<Long> filmIds) {
+
+        final String sql =
+                "SELECT film_id, user_id " +
+                        "FROM user_film_like " +
+                        "WHERE film_id IN (:ids)";
+
+        final Map<Long, LongHashSet> likesByFilmId = new HashMap<>();
+
+        filmIds.forEach(filmId -> likesByFilmId.put(filmId, new LongHashSet()));
+
+        for (int from = 0; from < filmIds.size(); from += BATCH_SIZE) {
+
+            namedParameterJdbcTemplate.query(sql,
+                    new MapSqlParameterSource(
+                            "ids", filmIds.subList(from, Math.min(from + BATCH_SIZE, filmIds.size()))),
+                    (RowCallbackHandler) rs -> likesByFilmId
+                            .get(rs.getLong("film_id"))
+                            .add(rs.getLong("user_id")));
+        }
+
+        return likesByFilmId;
     }
 
     @Override
@@ -244,11 +598,15 @@ public class DbFilmStorageImpl implements FilmStorage {
                 "DELETE FROM films " +
                         "WHERE id = ?",
                 filmId);
+
+        filmLikeCounters.removeFilm(filmId);
     }
 
     @Override
     public void removeAllFilm() {
 
+        filmLikeCounters.clear();
+
         jdbcTemplate.update(
                 "DELETE FROM user_film_like");
 
@@ -272,6 +630,8 @@ public class DbFilmStorageImpl implements FilmStorage {
                 "ALTER TABLE genres " +
                         "ALTER COLUMN id " +
                         "RESTART WITH 7");
+
+        applicationEventPublisher.publishEvent(GenreChangedEvent.allGenres());
     }
 
     @Override
@@ -349,86 +709,419 @@ public class DbFilmStorageImpl implements FilmStorage {
     }
 
     @Override
-    public void addUserLikeOnFilm(long filmId, long userId) {
+    @Transactional
+    public void addUserLikeOnFilm(long filmId, long userId) throws ConflictException, NotFoundException {
 
         final String sql =
                 "INSERT INTO user_film_like " +
                         "(user_id, film_id)" +
                         " VALUES (?, ?)";
 
-        jdbcTemplate.update(sql,
-                userId, filmId);
+        try {
+            jdbcTemplate.update(sql,
+                    userId, filmId);
+
+        } catch (DuplicateKeyException e) {
+            throw new ConflictException("У фильма с id => " + filmId
+                    + " уже существует лайк пользователя с id => " + userId);
+
+        } catch (DataIntegrityViolationException e) {
+            final String violation = String.valueOf(e.getMostSpecificCause().getMessage()).toUpperCase();
+
+            if (violation.contains(LIKE_FILM_FK)) {
+                throw new NotFoundException("Такой фильм с id => " + filmId + " не существует");
+            }
+            if (violation.contains(LIKE_USER_FK)) {
+                throw new NotFoundException("Такой пользователь c id => " + userId + " не существует");
+            }
+            throw e;
+        }
+
+        addLikesCount(Map.of(filmId, 1L));
     }
 
     @Override
-    public void removeUserLikeOnFilm(long filmId, long userId) {
+    @Transactional
+    public boolean removeUserLikeOnFilm(long filmId, long userId) {
 
         final String sql =
                 "DELETE FROM user_film_like " +
                         "WHERE user_id = ? " +
                         "AND film_id = ?";
 
-        jdbcTemplate.update(sql,
+        final int removed = jdbcTemplate.update(sql,
                 userId, filmId);
+
+        if (removed > 0) {
+            addLikesCount(Map.of(filmId, (long) -removed));
+        }
+
+        return removed > 0;
     }
 
-    private Film makeFilm(ResultSet resultSet, int rowNumber) throws SQLException {
+    @Override
+    @Transactional
+    public Map<Long, Long> addUserLikesOnFilms(List<FilmLikeEdge> likes) {
 
-        final String sqlQueryMpaByFilmId =
-                "SELECT id, name " +
-                        "FROM mpas " +
-                        "JOIN film_mpa on mpas.id = film_mpa.mpa_id " +
-                        "WHERE film_mpa.film_id = ? " +
-                        "ORDER BY id";
+        final String sql =
+                "MERGE INTO user_film_like l " +
+                        "USING (VALUES (CAST(? AS INT), CAST(? AS INT))) e (user_id, film_id) " +
+                        "ON l.user_id = e.user_id AND l.film_id = e.film_id " +
+                        "WHEN NOT MATCHED THEN INSERT (user_id, film_id) VALUES (e.user_id, e.film_id)";
 
-        final String sqlGenresByFilmId =
-                "SELECT id, name " +
-                        "FROM genres " +
-                        "JOIN film_genre on genres.id = film_genre.genre_id " +
-                        "WHERE film_genre.film_id = ? " +
-                        "ORDER BY id";
+        final int[][] insertedRows = jdbcTemplate.batchUpdate(sql,
+                likes,
+                BATCH_SIZE,
+                (ps, like) -> {
+                    ps.setLong(1, like.getUserId());
+                    ps.setLong(2, like.getFilmId());
+                });
 
-        final String sqlLikesByFilmId =
-                "SELECT user_id " +
-                        "FROM user_film_like " +
-                        "WHERE film_id = ?";
+        final Map<Long, Long> addedLikesByFilmId = countLikesByFilmId(likes, insertedRows);
+
+        addLikesCount(addedLikesByFilmId);
+
+        return addedLikesByFilmId;
+    }
+
+    @Override
+    @Transactional
+    public Map<Long, Long> removeUserLikesOnFilms(List<FilmLikeEdge> likes) {
+
+        final String sql =
+                "DELETE FROM user_film_like " +
+                        "WHERE user_id = ? " +
+                        "AND film_id = ?";
+
+        final int[][] removedRows = jdbcTemplate.batchUpdate(sql,
+                likes,
+                BATCH_SIZE,
+                (ps, like) -> {
+                    ps.setLong(1, like.getUserId());
+                    ps.setLong(2, like.getFilmId());
+                });
+
+        final Map<Long, Long> removedLikesByFilmId = countLikesByFilmId(likes, removedRows);
+
+        final Map<Long, Long> unlikesByFilmId = new HashMap<>();
+
+        removedLikesByFilmId.forEach((filmId, removed) -> unlikesByFilmId.put(filmId, -removed));
+        addLikesCount(unlikesByFilmId);
+
+        return removedLikesByFilmId;
+    }
+
+    @Override
+    public int recalculateLikesCount() {
+
+        final String sql =
+                "UPDATE films " +
+                        "SET likes_count = (SELECT COUNT(*) FROM user_film_like WHERE film_id = films.id) " +
+                        "WHERE likes_count <> (SELECT COUNT(*) FROM user_film_like WHERE film_id = films.id)";
+
+        final int[] repaired = new int[1];
+
+        filmLikeCounters.reset(() -> {
+            reconcileLikesCount();
+            repaired[0] = jdbcTemplate.update(sql);
+        }, this::getStoredLikesCount);
+
+        return repaired[0];
+    }
+
+    @Override
+    public void flushPendingLikes() {
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${filmorate.likes.counters.reconcile-interval-ms:1000}")
+    public void reconcileLikesCount() {
+
+        if (filmLikeCounters.hasUnpersistedLikes()) {
+            filmLikeCounters.reconcile(deltas -> transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(
+                            "UPDATE films " +
+                                    "SET likes_count = likes_count + ? " +
+                                    "WHERE id = ?",
+                            new ArrayList<>(deltas.entrySet()),
+                            BATCH_SIZE,
+                            (ps, delta) -> {
+                                ps.setLong(1, delta.getValue());
+                                ps.setLong(2, delta.getKey());
+                            })));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserRemoved(UserRemovedEvent event) {
+
+        if (event.getUserId() == null) {
+            filmLikeCounters.clear();
+            return;
+        }
+
+        filmLikeCounters.reset(this::reconcileLikesCount, this::getStoredLikesCount);
+    }
+
+    private Map<Long, Long> countLikesByFilmId(List<FilmLikeEdge> likes, int[][] changedRows) {
+
+        final Map<Long, Long> likesByFilmId = new HashMap<>();
+
+        int index = 0;
+
+        for (int[] batch : changedRows) {
+            for (int changed : batch) {
+                if (changed > 0) {
+                    likesByFilmId.merge(likes.get(index).getFilmId(), 1L, Long::sum);
+                }
+                index++;
+            }
+        }
+
+        return likesByFilmId;
+    }
+
+    private void addLikesCount(Map<Long, Long> deltasByFilmId) {
+
+        final Runnable addLikes = () -> filmLikeCounters.addLikes(deltasByFilmId, this::getStoredLikesCount);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addLikes.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                addLikes.run();
+            }
+        });
+    }
+
+    private Map<Long, Long> getStoredLikesCount(Collection<Long> filmIds) {
+
+        final String sql =
+                "SELECT id, likes_count " +
+                        "FROM films " +
+                        "WHERE id IN (:ids)";
+
+        final List<Long> filmIdList = new ArrayList<>(filmIds);
+        final Map<Long, Long> likesCountByFilmId = new HashMap<>();
+
+        for (int from = 0; from < filmIdList.size(); from += BATCH_SIZE) {
+
+            namedParameterJdbcTemplate.query(sql,
+                    new MapSqlParameterSource(
+                            "ids", filmIdList.subList(from, Math.min(from + BATCH_SIZE, filmIdList.size()))),
+                    (RowCallbackHandler) rs -> likesCountByFilmId.put(rs.getLong("id"), rs.getLong("likes_count")));
+        }
+
+        return likesCountByFilmId;
+    }
+
+    private void saveMpa(Film film, Integer storedMpaId) {
+
+        final Mpa mpa = mpaStorage.getMpaById(film.getMpa().getId());
+
+        if (storedMpaId == null || storedMpaId != mpa.getId()) {
+
+            final int updated = jdbcTemplate.update(
+                    "UPDATE film_mpa " +
+                            "SET mpa_id = ? " +
+                            "WHERE film_id = ?",
+                    mpa.getId(), film.getId());
+
+            if (updated == 0) {
+                jdbcTemplate.update(
+                        "INSERT INTO film_mpa " +
+                                "(film_id, mpa_id) " +
+                                "VALUES (?, ?)",
+                        film.getId(), mpa.getId());
+            }
+        }
+
+        film.setMpa(mpa);
+    }
+
+    private void saveGenres(Film film, Set<Integer> storedGenreIds) {
+
+        final Set<Integer> genreIds = new TreeSet<>();
+
+        film.getGenres()
+                .stream()
+                .map(Genre::getId)
+                .filter(Objects::nonNull)
+                .forEach(genreIds::add);
+
+        final Map<Integer, Genre> genresById = new HashMap<>();
 
+        if (!genreIds.isEmpty()) {
+            genreStorage.getGenreList().forEach(genre -> genresById.put(genre.getId(), genre));
+        }
+
+        final List<Integer> addedGenreIds = new ArrayList<>();
+
+        for (Integer genreId : genreIds) {
+            if (!genresById.containsKey(genreId)) {
+                throw new NotFoundException("Жанр по id => " + genreId + " не существует");
+            }
+            if (!storedGenreIds.contains(genreId)) {
+                addedGenreIds.add(genreId);
+            }
+        }
+
+        final List<Integer> removedGenreIds = new ArrayList<>(storedGenreIds);
+
+        removedGenreIds.removeAll(genreIds);
+
+        if (!addedGenreIds.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO film_genre " +
+                            "(film_id, genre_id) " +
+                            "VALUES (?, ?)",
+                    addedGenreIds,
+                    addedGenreIds.size(),
+                    (ps, genreId) -> {
+                        ps.setLong(1, film.getId());
+                        ps.setInt(2, genreId);
+                    });
+        }
+
+        if (!removedGenreIds.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "DELETE FROM film_genre " +
+                            "WHERE film_id = ? " +
+                            "AND genre_id = ?",
+                    removedGenreIds,
+                    removedGenreIds.size(),
+                    (ps, genreId) -> {
+                        ps.setLong(1, film.getId());
+                        ps.setInt(2, genreId);
+                    });
+        }
+
+        film.getGenres().clear();
+
+        genreIds.forEach(genreId -> film.getGenres().add(genresById.get(genreId)));
+    }
+
+    private static List<String> chunkOrNull(List<String> values, int from) {
+
+        if (from >= values.size()) {
+            return Collections.singletonList(null);
+        }
 
-        final Film filmBuilder = Film
+        return values.subList(from, Math.min(from + BATCH_SIZE, values.size()));
+    }
+
+    private static String columnsOf(Set<FilmField> fields) {
+
+        if (fields.containsAll(ALL_FIELDS)) {
+            return "*";
+        }
+
+        final StringJoiner columns = new StringJoiner(", ");
+
+        columns.add(ID.getColumn());
+
+        fields.stream()
+                .filter(field -> field != ID && field.getColumn() != null)
+                .forEach(field -> columns.add(field.getColumn()));
+
+        return columns.toString();
+    }
+
+    private Film makeFilm(ResultSet resultSet, int rowNumber) throws SQLException {
+        return makeFilm(resultSet, ALL_FIELDS);
+    }
+
+    private Film makeFilm(ResultSet resultSet, Set<FilmField> fields) throws SQLException {
+
+        final Film.FilmBuilder film = Film
                 .builder()
-                .id(resultSet.getLong("id"))
-                .name(resultSet.getString("name"))
-                .description(resultSet.getString("description"))
-                .releaseDate(resultSet.getDate("release_date").toLocalDate())
-                .duration(resultSet.getInt("duration"))
-                .rate(resultSet.getFloat("rate"))
-                .build();
+                .id(resultSet.getLong("id"));
 
-        try {
-            filmBuilder
-                    .setMpa(
-                            jdbcTemplate.queryForObject(sqlQueryMpaByFilmId,
-                                    dbMpaStorageImpl::makeMpa,
-                                    filmBuilder.getId()));
+        if (fields.contains(NAME)) {
+            film.name(resultSet.getString("name"));
+        }
+        if (fields.contains(DESCRIPTION)) {
+            film.description(resultSet.getString("description"));
+        }
+        if (fields.contains(RELEASE_DATE)) {
+            film.releaseDate(resultSet.getDate("release_date").toLocalDate());
+        }
+        if (fields.contains(DURATION)) {
+            film.duration(resultSet.getInt("duration"));
+        }
+        if (fields.contains(RATE)) {
+            film.rate(resultSet.getFloat("rate"));
+        }
+        if (fields.contains(LIKES_COUNT)) {
+            film.likesCount(filmLikeCounters.getLikesCount(resultSet.getLong("id"), resultSet.getLong("likes_count")));
+        }
 
-        } catch (EmptyResultDataAccessException e) {
-            filmBuilder.setMpa(null);
+        return film.build();
+    }
+
+    private List<Film> makeFilms(List<Film> films) {
+        return makeFilms(films, ALL_FIELDS);
+    }
+
+    private List<Film> makeFilms(List<Film> films, Set<FilmField> fields) {
+
+        if (films.isEmpty() || !fields.contains(MPA) && !fields.contains(GENRES)) {
+            return films;
+        }
+
+        final Map<Long, Film> filmsById = new HashMap<>();
+
+        films.forEach(film -> filmsById.put(film.getId(), film));
+
+        final List<Long> filmIds = new ArrayList<>(filmsById.keySet());
+
+        for (int from = 0; from < filmIds.size(); from += BATCH_SIZE) {
+
+            final MapSqlParameterSource params = new MapSqlParameterSource(
+                    "ids", filmIds.subList(from, Math.min(from + BATCH_SIZE, filmIds.size())));
+
+            if (fields.contains(MPA)) {
+                loadMpas(filmsById, params);
+            }
+            if (fields.contains(GENRES)) {
+                loadGenres(filmsById, params);
+            }
         }
 
-        filmBuilder
-                .getGenres()
-                .addAll(
-                        jdbcTemplate.query(sqlGenresByFilmId,
-                                dbGenreStorageImpl::makeGenre,
-                                filmBuilder.getId()));
+        return films;
+    }
+
+    private void loadMpas(Map<Long, Film> filmsById, MapSqlParameterSource params) {
+
+        final String sqlMpasByFilmIds =
+                "SELECT film_id, mpa_id " +
+                        "FROM film_mpa " +
+                        "WHERE film_id IN (:ids)";
+
+        namedParameterJdbcTemplate.query(sqlMpasByFilmIds,
+                params,
+                (RowCallbackHandler) rs -> filmsById
+                        .get(rs.getLong("film_id"))
+                        .setMpa(mpaStorage.getMpaById(rs.getInt("mpa_id"))));
+    }
+
+    private void loadGenres(Map<Long, Film> filmsById, MapSqlParameterSource params) {
 
-        filmBuilder
-                .getUserFilmLike()
-                .addAll(
-                        jdbcTemplate.query(sqlLikesByFilmId,
-                                (rs, rowNum) -> rs.getLong("user_id"),
-                                filmBuilder.getId()));
+        final String sqlGenresByFilmIds =
+                "SELECT film_id, genre_id " +
+                        "FROM film_genre " +
+                        "WHERE film_id IN (:ids) " +
+                        "ORDER BY genre_id";
 
-        return filmBuilder;
+        namedParameterJdbcTemplate.query(sqlGenresByFilmIds,
+                params,
+                (RowCallbackHandler) rs -> filmsById
+                        .get(rs.getLong("film_id"))
+                        .getGenres()
+                        .add(genreStorage.getGenreById(rs.getInt("genre_id"))));
     }
-}
\ No newline at end of file
+}
@@ -2,10 +2,12 @@ package ru.yandex.practicum.filmorate.storage.film.dao;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.event.GenreChangedEvent;
 import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
@@ -20,6 +22,7 @@ import java.util.*;
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 public class DbGenreStorageImpl implements GenreStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher applicationEventPublisher;
 
     @Override
     public Genre createGenre(Genre genre) {
@@ -34,9 +37,10 @@ public class DbGenreStorageImpl implements GenreStorage {
         final int genreId =  simpleJdbcInsert.executeAndReturnKey(
                 genreFields).intValue();
 
-        genre.setId(genreId);
-
-        return genre;
+        return genre
+                .toBuilder()
+                .id(genreId)
+                .build();
     }
 
     @Override
@@ -50,6 +54,8 @@ public class DbGenreStorageImpl implements GenreStorage {
         jdbcTemplate.update(sqlQuery,
                 genre.getName(), genre.getId());
 
+        applicationEventPublisher.publishEvent(GenreChangedEvent.genre(genre.getId()));
+
         return genre;
     }
 
@@ -62,7 +68,9 @@ public class DbGenreStorageImpl implements GenreStorage {
                         "VALUES (?, ?)";
 
         jdbcTemplate.update(sql,
-                genreId, filmId);
+                filmId, genreId);
+
+        applicationEventPublisher.publishEvent(GenreChangedEvent.onFilm(genreId, filmId));
     }
 
     @Override
@@ -75,6 +83,8 @@ public class DbGenreStorageImpl implements GenreStorage {
 
         jdbcTemplate.update(sql,
                 genreId, filmId);
+
+        applicationEventPublisher.publishEvent(GenreChangedEvent.onFilm(genreId, filmId));
     }
 
     @Override
@@ -189,12 +199,16 @@ public class DbGenreStorageImpl implements GenreStorage {
                 "DELETE FROM genres " +
                 "WHERE id = ?",
                 id);
+
+        applicationEventPublisher.publishEvent(GenreChangedEvent.genre(id));
     }
 
     @Override
     public void removeAllGenre() {
         jdbcTemplate.update(
                 "DELETE FROM genres");
+
+        applicationEventPublisher.publishEvent(GenreChangedEvent.allGenres());
     }
 
     @Override
@@ -0,0 +1,233 @@
+package ru.yandex.practicum.filmorate.storage.film.index;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+@Component
+public class FilmLikeCounters {
+    private final ConcurrentMap<Long, Counter> countersByFilmId = new ConcurrentHashMap<>();
+    private final Set<Long> unpersistedFilmIds = ConcurrentHashMap.newKeySet();
+    private final Set<Long> unindexedFilmIds = ConcurrentHashMap.newKeySet();
+    private volatile long resets;
+
+    public void addLikes(long filmId, long delta, LongSupplier storedLikesCount) {
+
+        Counter counter = countersByFilmId.get(filmId);
+
+        if (counter == null) {
+            counter = seedCounter(filmId, resets, storedLikesCount.getAsLong(), storedLikesCount);
+        }
+
+        addLikes(filmId, counter, delta);
+    }
+
+    public void addLikes(Map<Long, Long> deltasByFilmId, Function<Collection<Long>, Map<Long, Long>> storedLikesCount) {
+
+        final long observedResets = resets;
+        final List<Long> uncountedFilmIds = deltasByFilmId.keySet()
+                .stream()
+                .filter(filmId -> !countersByFilmId.containsKey(filmId))
+                .collect(Collectors.toList());
+
+        final Map<Long, Long> storedLikesCountByFilmId = uncountedFilmIds.isEmpty()
+                ? Map.of()
+                : storedLikesCount.apply(uncountedFilmIds);
+
+        deltasByFilmId.forEach((filmId, delta) -> {
+
+            final LongSupplier storedFilmLikesCount = () -> storedLikesCount
+                    .apply(List.of(filmId))
+                    .getOrDefault(filmId, 0L);
+
+            Counter counter = countersByFilmId.get(filmId);
+
+            if (counter == null) {
+                counter = storedLikesCountByFilmId.containsKey(filmId)
+                        ? seedCounter(filmId, observedResets, storedLikesCountByFilmId.get(filmId), storedFilmLikesCount)
+                        : seedCounter(filmId, resets, storedFilmLikesCount.getAsLong(), storedFilmLikesCount);
+            }
+
+            addLikes(filmId, counter, delta);
+        });
+    }
+
+    public long getLikesCount(long filmId, long storedLikesCount) {
+
+        final Counter counter = countersByFilmId.get(filmId);
+
+        return counter == null ? storedLikesCount : counter.likes.sum();
+    }
+
+    public boolean hasUnpersistedLikes() {
+        return !unpersistedFilmIds.isEmpty();
+    }
+
+    public synchronized void reconcile(Consumer<Map<Long, Long>> persistDeltas) {
+
+        final Map<Long, Long> deltasByFilmId = new HashMap<>();
+        final Map<Long, Long> likesCountByFilmId = new HashMap<>();
+
+        for (Long filmId : unpersistedFilmIds) {
+            unpersistedFilmIds.remove(filmId);
+
+            final Counter counter = countersByFilmId.get(filmId);
+
+            if (counter == null) {
+                continue;
+            }
+
+            final long likesCount = counter.likes.sum();
+
+            if (likesCount != counter.persisted) {
+                deltasByFilmId.put(filmId, likesCount - counter.persisted);
+                likesCountByFilmId.put(filmId, likesCount);
+            }
+        }
+
+        if (deltasByFilmId.isEmpty()) {
+            return;
+        }
+
+        try {
+            persistDeltas.accept(deltasByFilmId);
+        } catch (RuntimeException e) {
+            unpersistedFilmIds.addAll(deltasByFilmId.keySet());
+            throw e;
+        }
+
+        likesCountByFilmId.forEach((filmId, likesCount) -> {
+
+            final Counter counter = countersByFilmId.get(filmId);
+
+            if (counter != null) {
+                counter.persisted = likesCount;
+            }
+        });
+    }
+
+    public void drainUnindexed(BiConsumer<Long, Long> consumer) {
+
+        for (Long filmId : unindexedFilmIds) {
+            unindexedFilmIds.remove(filmId);
+
+            final Counter counter = countersByFilmId.get(filmId);
+
+            if (counter != null) {
+                consumer.accept(filmId, counter.likes.sum());
+            }
+        }
+    }
+
+    public void removeFilm(long filmId) {
+        countersByFilmId.remove(filmId);
+        unpersistedFilmIds.remove(filmId);
+        unindexedFilmIds.remove(filmId);
+    }
+
+    public synchronized void clear() {
+
+        resets++;
+        try {
+            countersByFilmId.clear();
+            unpersistedFilmIds.clear();
+            unindexedFilmIds.clear();
+        } finally {
+            resets++;
+        }
+    }
+
+    public synchronized void reset(Runnable repair, Function<Collection<Long>, Map<Long, Long>> storedLikesCount) {
+
+        resets++;
+        try {
+            repair.run();
+
+            final List<Long> filmIds = new ArrayList<>(countersByFilmId.keySet());
+            final Map<Long, Long> storedLikesCountByFilmId = filmIds.isEmpty()
+                    ? Map.of()
+                    : storedLikesCount.apply(filmIds);
+
+            filmIds.forEach(filmId -> {
+
+                final Counter counter = countersByFilmId.get(filmId);
+
+                if (counter == null) {
+                    return;
+                }
+                if (!storedLikesCountByFilmId.containsKey(filmId)) {
+                    removeFilm(filmId);
+                    return;
+                }
+
+                rebase(counter, storedLikesCountByFilmId.get(filmId));
+                markDirty(unindexedFilmIds, filmId);
+            });
+        } finally {
+            resets++;
+        }
+    }
+
+    private Counter seedCounter(long filmId, long observedResets, long storedLikesCount, LongSupplier reloadStoredLikesCount) {
+
+        final Counter seeded = new Counter(storedLikesCount);
+        final Counter counter = countersByFilmId.putIfAbsent(filmId, seeded);
+
+        if (counter != null) {
+            return counter;
+        }
+
+        if ((observedResets & 1) == 1 || resets != observedResets) {
+            synchronized (this) {
+                if (countersByFilmId.get(filmId) == seeded) {
+                    rebase(seeded, reloadStoredLikesCount.getAsLong());
+                }
+            }
+        }
+
+        return seeded;
+    }
+
+    private void addLikes(long filmId, Counter counter, long delta) {
+
+        counter.likes.add(delta);
+
+        markDirty(unpersistedFilmIds, filmId);
+        markDirty(unindexedFilmIds, filmId);
+    }
+
+    private static void rebase(Counter counter, long storedLikesCount) {
+        counter.likes.add(storedLikesCount - counter.persisted);
+        counter.persisted = storedLikesCount;
+    }
+
+    private static void markDirty(Set<Long> dirtyFilmIds, long filmId) {
+
+        if (!dirtyFilmIds.contains(filmId)) {
+            dirtyFilmIds.add(filmId);
+        }
+    }
+
+    private static class Counter {
+        private final LongAdder likes = new LongAdder();
+        private volatile long persisted;
+
+        private Counter(long storedLikesCount) {
+            likes.add(storedLikesCount);
+            persisted = storedLikesCount;
+        }
+    }
+}
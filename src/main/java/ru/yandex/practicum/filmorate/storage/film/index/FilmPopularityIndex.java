@@ -0,0 +1,168 @@
+package ru.yandex.practicum.filmorate.storage.film.index;
+
+import lombok.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+@Component
+public class FilmPopularityIndex {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ConcurrentMap<Long, Long> likesByFilmId = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Position> positions = new ConcurrentSkipListSet<>();
+    private final ConcurrentSkipListSet<Long> filmIds = new ConcurrentSkipListSet<>();
+    private volatile boolean stale = true;
+
+    public void rebuild(Map<Long, Long> likesCountByFilmId) {
+
+        lock.writeLock().lock();
+        try {
+            likesByFilmId.clear();
+            positions.clear();
+            filmIds.clear();
+
+            likesCountByFilmId.forEach((filmId, likesCount) -> {
+                likesByFilmId.put(filmId, likesCount);
+                filmIds.add(filmId);
+
+                if (likesCount > 0) {
+                    positions.add(new Position(likesCount, filmId));
+                }
+            });
+
+            stale = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void markStale() {
+        stale = true;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    public void addFilm(long filmId) {
+        update(filmId, likesCount -> likesCount == null ? 0L : likesCount);
+    }
+
+    public void putFilm(long filmId, long likesCount) {
+        update(filmId, oldLikesCount -> likesCount);
+    }
+
+    public void removeFilm(long filmId) {
+        update(filmId, likesCount -> null);
+    }
+
+    public void incrementLikes(long filmId) {
+        changeLikes(filmId, 1);
+    }
+
+    public void decrementLikes(long filmId) {
+        changeLikes(filmId, -1);
+    }
+
+    public void clear() {
+        rebuild(Map.of());
+    }
+
+    public List<Long> getTopFilmIds(int count) {
+
+        final List<Long> topFilmIds = collectTopFilmIds(count);
+
+        if (topFilmIds.size() == Math.min(count, likesByFilmId.size())) {
+            return topFilmIds;
+        }
+
+        lock.writeLock().lock();
+        try {
+            return collectTopFilmIds(count);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private List<Long> collectTopFilmIds(int count) {
+
+        final List<Long> topFilmIds = new ArrayList<>(Math.min(count, likesByFilmId.size()));
+        final Set<Long> seenFilmIds = new HashSet<>();
+
+        for (Position position : positions) {
+            if (topFilmIds.size() == count) {
+                break;
+            }
+            if (seenFilmIds.add(position.getFilmId())) {
+                topFilmIds.add(position.getFilmId());
+            }
+        }
+
+        for (Long filmId : filmIds) {
+            if (topFilmIds.size() == count) {
+                break;
+            }
+            if (Objects.equals(likesByFilmId.get(filmId), 0L) && seenFilmIds.add(filmId)) {
+                topFilmIds.add(filmId);
+            }
+        }
+
+        return topFilmIds;
+    }
+
+    private void changeLikes(long filmId, long delta) {
+        update(filmId, likesCount -> Math.max(0, (likesCount == null ? 0 : likesCount) + delta));
+    }
+
+    private void update(long filmId, UnaryOperator<Long> change) {
+
+        lock.readLock().lock();
+        try {
+            likesByFilmId.compute(filmId, (id, likesCount) -> {
+
+                final Long newLikesCount = change.apply(likesCount);
+
+                if (!Objects.equals(likesCount, newLikesCount)) {
+                    if (likesCount == null) {
+                        filmIds.add(filmId);
+                    }
+                    if (newLikesCount != null && newLikesCount > 0) {
+                        positions.add(new Position(newLikesCount, filmId));
+                    }
+                    if (likesCount != null && likesCount > 0) {
+                        positions.remove(new Position(likesCount, filmId));
+                    }
+                    if (newLikesCount == null) {
+                        filmIds.remove(filmId);
+                    }
+                }
+
+                return newLikesCount;
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Value
+    private static class Position implements Comparable<Position> {
+
+        long likesCount;
+
+        long filmId;
+
+        @Override
+        public int compareTo(Position other) {
+
+            final int byLikes = Long.compare(other.likesCount, likesCount);
+
+            return byLikes != 0 ? byLikes : Long.compare(filmId, other.filmId);
+        }
+    }
+}
@@ -2,13 +2,27 @@ package ru.yandex.practicum.filmorate.storage.film.storage;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmLikeEdge;
+import ru.yandex.practicum.filmorate.model.FilmPatch;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
+import ru.yandex.practicum.filmorate.model.LongSortedSet;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import static java.util.stream.Collectors.toList;
 
@@ -16,87 +30,276 @@ import static java.util.stream.Collectors.toList;
 @Component
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 public class InMemoryFilmStorageImpl implements FilmStorage {
-    private final TreeSet<Film> films = new TreeSet<>(Comparator
-            .comparing(Film::getLikesSize)
-            .thenComparing(Film::getName)
-            .thenComparing(Film::getReleaseDate)
-            .thenComparing(Film::getDuration));
-    private final TreeSet<Long> idsFilms = new TreeSet<>();
-    private long globalId = 0;
+    private static final int LOCK_STRIPES = 64;
+    private final ConcurrentMap<Long, Film> filmsById = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Film> filmsInIdOrder = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<List<Object>, Long> filmIdsByNameReleaseDateDuration = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, LongSortedSet> likesByFilmId = new ConcurrentHashMap<>();
+    private final FilmPopularityIndex filmPopularityIndex = new FilmPopularityIndex();
+    private final StripedLocks locks = new StripedLocks(LOCK_STRIPES);
+    private final AtomicLong globalId = new AtomicLong();
+    @Qualifier("inMemoryUserStorageImpl")
+    private final UserStorage userStorage;
 
     @Override
     public Film createFilm(Film film) {
+
         film.setId(getNextId());
-        films.add(film);
-        idsFilms.add(film.getId());
-        return film;
+
+        final List<Object> key = nameReleaseDateDuration(film);
+
+        return locks.call(() -> {
+
+            checkFilmByNameReleaseDateDuration(film);
+
+            film.setLikesCount(0);
+            putFilm(film);
+            likesByFilmId.put(film.getId(), new LongSortedSet());
+            filmPopularityIndex.putFilm(film.getId(), 0);
+
+            return film;
+
+        }, film.getId(), key);
+    }
+
+    @Override
+    public void createFilms(List<Film> films) {
+        films.forEach(this::createFilm);
     }
 
     @Override
     public void resetGlobalId() {
-        globalId = 0;
+        globalId.set(0);
     }
 
     @Override
     public Film updateFilm(Film film) {
-        Optional<Film> oldFilm = films
-                .stream()
-                .filter(f -> f.getId().equals(film.getId()))
-                .findFirst();
-        if (oldFilm.isPresent()) {
-            films.remove(oldFilm.get());
-            films.add(film);
+
+        while (true) {
+            final Film oldFilm = filmsById.get(film.getId());
+
+            if (oldFilm == null) {
+                return film;
+            }
+
+            final List<Object> oldKey = nameReleaseDateDuration(oldFilm);
+
+            final boolean updated = locks.call(() -> {
+
+                if (filmsById.get(film.getId()) != oldFilm) {
+                    return false;
+                }
+
+                checkFilmByNameReleaseDateDuration(film);
+
+                filmIdsByNameReleaseDateDuration.remove(oldKey, oldFilm.getId());
+                film.setLikesCount(oldFilm.getLikesCount());
+                putFilm(film);
+
+                return true;
+
+            }, film.getId(), oldKey, nameReleaseDateDuration(film));
+
+            if (updated) {
+                return film;
+            }
         }
-        return film;
+    }
+
+    @Override
+    public Film patchFilm(long filmId, FilmPatch filmPatch) throws NotFoundException, ConflictException {
+
+        final Film film = getFilmById(filmId);
+
+        final Film patchedFilm = Film
+                .builder()
+                .id(film.getId())
+                .name(filmPatch.getName() == null ? film.getName() : filmPatch.getName())
+                .description(filmPatch.getDescription() == null ? film.getDescription() : filmPatch.getDescription())
+                .duration(filmPatch.getDuration() == null ? film.getDuration() : filmPatch.getDuration())
+                .releaseDate(filmPatch.getReleaseDate() == null ? film.getReleaseDate() : filmPatch.getReleaseDate())
+                .rate(filmPatch.getRate() == null ? film.getRate() : filmPatch.getRate())
+                .mpa(filmPatch.getMpa() == null ? film.getMpa() : filmPatch.getMpa())
+                .build();
+
+        patchedFilm.getGenres().addAll(filmPatch.getGenres() == null ? film.getGenres() : filmPatch.getGenres());
+
+        if (!patchedFilm.getName().equals(film.getName())
+                || patchedFilm.getDuration() != film.getDuration()
+                || !patchedFilm.getReleaseDate().equals(film.getReleaseDate())) {
+            checkFilmByNameReleaseDateDuration(patchedFilm);
+        }
+
+        return updateFilm(patchedFilm);
     }
 
     @Override
     public Film getFilmById(long filmId) {
-        return films
-                .stream()
-                .filter(f -> f.getId() == filmId)
-                .findFirst()
-                .orElseThrow(() -> new NotFoundException("Такой фильм с id: " + filmId + " не существует"));
+
+        final Film film = filmsById.get(filmId);
+
+        if (film == null) {
+            throw new NotFoundException("Такой фильм с id: " + filmId + " не существует");
+        }
+
+        return film;
     }
 
     @Override
     public Collection<Film> getAllFilm() {
-        return films;
+        return new ArrayList<>(filmsInIdOrder.values());
+    }
+
+    @Override
+    public Film getFilmById(long filmId, Set<FilmField> fields) {
+        return getFilmById(filmId);
+    }
+
+    @Override
+    public Collection<Film> getAllFilm(Set<FilmField> fields) {
+        return getAllFilm();
+    }
+
+    @Override
+    public List<Film> getFilmPage(long afterId, int limit, Set<FilmField> fields) {
+        return getFilmPage(afterId, limit);
+    }
+
+    @Override
+    public List<Film> getFilmPage(long afterId, int limit) {
+        return filmsInIdOrder
+                .tailMap(afterId, false)
+                .values()
+                .stream()
+                .limit(limit)
+                .collect(toList());
+    }
+
+    @Override
+    public void streamAllFilm(Consumer<Film> consumer) {
+        filmsInIdOrder.values().forEach(consumer);
     }
 
     @Override
     public Collection<Film> getFilmByPopular(int count) {
-        return films
+        return getFilmsByIds(filmPopularityIndex.getTopFilmIds(count));
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Long> filmIds) {
+        return filmIds
                 .stream()
-                .limit(count)
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
                 .collect(toList());
     }
 
     @Override
-    public void removeFilmById(long filmId) {
-        films.remove(films
+    public List<Film> getFilmsByNamesOrDescriptions(Collection<String> names, Collection<String> descriptions) {
+
+        final Set<String> nameSet = new HashSet<>(names);
+        final Set<String> descriptionSet = new HashSet<>(descriptions);
+
+        return filmsInIdOrder
+                .values()
                 .stream()
-                .filter(f -> f.getId() == filmId)
-                .findFirst()
-                .orElseThrow(() ->
-                        new NotFoundException("Такой фильм с id: " + filmId + " не существует")));
-        idsFilms.remove(filmId);
+                .filter(film -> nameSet.contains(film.getName()) || descriptionSet.contains(film.getDescription()))
+                .collect(toList());
+    }
+
+    @Override
+    public Map<Long, Long> getAllFilmLikesCount() {
+
+        final Map<Long, Long> likesCountByFilmId = new HashMap<>();
+
+        filmsById.forEach((filmId, film) -> likesCountByFilmId.put(filmId, film.getLikesCount()));
+
+        return likesCountByFilmId;
+    }
+
+    @Override
+    public LongHashSet getAllFilmIds() {
+        return new LongHashSet(filmsById.keySet());
+    }
+
+    @Override
+    public long getFilmLikesCount(long filmId) throws NotFoundException {
+        return getFilmById(filmId).getLikesCount();
+    }
+
+    @Override
+    public List<Long> getFilmLikePage(long filmId, long afterUserId, int limit) {
+
+        final long[] userIds = locks.call(() -> {
+            final LongSortedSet likes = likesByFilmId.get(filmId);
+            return likes == null ? new long[0] : likes.tail(afterUserId, limit);
+        }, filmId);
+
+        return Arrays
+                .stream(userIds)
+                .boxed()
+                .collect(toList());
+    }
+
+    @Override
+    public Map<Long, LongHashSet> getFilmLikes(List<Long> filmIds) {
+
+        final Map<Long, LongHashSet> likes = new HashMap<>();
+
+        filmIds.forEach(filmId -> likes.put(filmId, locks.call(() -> {
+            final LongSortedSet filmLikes = likesByFilmId.get(filmId);
+            final LongHashSet copy = new LongHashSet(filmLikes == null ? 0 : filmLikes.size());
+
+            if (filmLikes != null) {
+                filmLikes.forEachLong(copy::add);
+            }
+
+            return copy;
+        }, filmId)));
+
+        return likes;
+    }
+
+    @Override
+    public void removeFilmById(long filmId) {
+
+        boolean removed = false;
+
+        while (!removed) {
+            final Film film = getFilmById(filmId);
+            final List<Object> key = nameReleaseDateDuration(film);
+
+            removed = locks.call(() -> {
+
+                if (!filmsById.remove(filmId, film)) {
+                    return false;
+                }
+
+                filmsInIdOrder.remove(filmId);
+                filmIdsByNameReleaseDateDuration.remove(key, filmId);
+                likesByFilmId.remove(filmId);
+                filmPopularityIndex.removeFilm(filmId);
+
+                return true;
+
+            }, filmId, key);
+        }
     }
 
     @Override
     public void removeAllFilm() {
-        films.clear();
-        idsFilms.clear();
+        filmsById.clear();
+        filmsInIdOrder.clear();
+        filmIdsByNameReleaseDateDuration.clear();
+        likesByFilmId.clear();
+        filmPopularityIndex.clear();
         resetGlobalId();
     }
 
     @Override
     public void checkFilmById(long filmId) throws NotFoundException {
 
-        final Long ceil = idsFilms.ceiling(filmId);
-        final Long floor = idsFilms.floor(filmId);
-
-        if (!Objects.equals(ceil, floor) || ceil == null) {
+        if (!filmsById.containsKey(filmId)) {
             throw new NotFoundException("Такой фильм с id: " + filmId + " не существует");
         }
     }
@@ -104,47 +307,172 @@ public class InMemoryFilmStorageImpl implements FilmStorage {
     @Override
     public void checkFilmByNameReleaseDateDuration(Film film) throws ConflictException {
 
-        final Film ceil = films.ceiling(film);
-        final Film floor = films.floor(film);
+        final Long filmId = filmIdsByNameReleaseDateDuration.get(nameReleaseDateDuration(film));
 
-        if (Objects.equals(ceil, floor) && ceil != null) {
+        if (filmId != null && !filmId.equals(film.getId())) {
             throw new ConflictException("Такой фильм: " + film
-                    + " уже существует, по id => " + ceil.getId());
+                    + " уже существует, по id => " + filmId);
         }
     }
 
     @Override
     public void checkFilmLikeByUserId(long filmId, long userId, boolean addOrRemove) throws ConflictException, NotFoundException {
 
-        final Film film = getFilmById(filmId);
+        checkFilmById(filmId);
+
+        final boolean liked = locks.call(() -> {
+            final LongSortedSet likes = likesByFilmId.get(filmId);
+            return likes != null && likes.contains(userId);
+        }, filmId);
 
         if (addOrRemove) {
 
-            if (film.getUserFilmLike().contains(userId)) {
-                throw new ConflictException("У фильма с id => " + film.getId()
+            if (liked) {
+                throw new ConflictException("У фильма с id => " + filmId
                         + " уже существует лайк пользователя с id => " + userId);
             }
 
         } else {
 
-            if (!film.getUserFilmLike().contains(userId)) {
-                throw new NotFoundException("У фильма с id => " + film.getId()
+            if (!liked) {
+                throw new NotFoundException("У фильма с id => " + filmId
                         + " не существует лайка пользователя с id => " + userId);
             }
         }
     }
 
     @Override
-    public void addUserLikeOnFilm(long filmId, long userId) {
-        getFilmById(filmId).getUserFilmLike().add(userId);
+    public void addUserLikeOnFilm(long filmId, long userId) throws ConflictException, NotFoundException {
+
+        locks.run(() -> {
+
+            final Film film = getFilmById(filmId);
+            final LongSortedSet likes = likesByFilmId.get(filmId);
+
+            userStorage.checkUserById(userId);
+
+            if (!likes.add(userId)) {
+                throw new ConflictException("У фильма с id => " + filmId
+                        + " уже существует лайк пользователя с id => " + userId);
+            }
+
+            film.setLikesCount(likes.size());
+            filmPopularityIndex.incrementLikes(filmId);
+
+        }, filmId);
+    }
+
+    @Override
+    public Map<Long, Long> addUserLikesOnFilms(List<FilmLikeEdge> likes) {
+
+        final Map<Long, Long> addedLikesByFilmId = new HashMap<>();
+
+        for (FilmLikeEdge like : likes) {
+
+            final boolean added = locks.call(() -> {
+
+                final Film film = filmsById.get(like.getFilmId());
+                final LongSortedSet filmLikes = likesByFilmId.get(like.getFilmId());
+
+                if (film == null || filmLikes == null || !filmLikes.add(like.getUserId())) {
+                    return false;
+                }
+
+                film.setLikesCount(filmLikes.size());
+                filmPopularityIndex.incrementLikes(like.getFilmId());
+
+                return true;
+
+            }, like.getFilmId());
+
+            if (added) {
+                addedLikesByFilmId.merge(like.getFilmId(), 1L, Long::sum);
+            }
+        }
+
+        return addedLikesByFilmId;
+    }
+
+    @Override
+    public Map<Long, Long> removeUserLikesOnFilms(List<FilmLikeEdge> likes) {
+
+        final Map<Long, Long> removedLikesByFilmId = new HashMap<>();
+
+        for (FilmLikeEdge like : likes) {
+            if (removeUserLikeOnFilm(like.getFilmId(), like.getUserId())) {
+                removedLikesByFilmId.merge(like.getFilmId(), 1L, Long::sum);
+            }
+        }
+
+        return removedLikesByFilmId;
+    }
+
+    @Override
+    public boolean removeUserLikeOnFilm(long filmId, long userId) {
+
+        return locks.call(() -> {
+
+            final Film film = filmsById.get(filmId);
+            final LongSortedSet likes = likesByFilmId.get(filmId);
+
+            if (film == null || likes == null || !likes.remove(userId)) {
+                return false;
+            }
+
+            film.setLikesCount(likes.size());
+            filmPopularityIndex.decrementLikes(filmId);
+
+            return true;
+
+        }, filmId);
+    }
+
+    @Override
+    public int recalculateLikesCount() {
+
+        int repaired = 0;
+
+        for (Long filmId : filmsById.keySet()) {
+
+            final boolean changed = locks.call(() -> {
+
+                final Film film = filmsById.get(filmId);
+                final LongSortedSet likes = likesByFilmId.get(filmId);
+
+                if (film == null || likes == null || film.getLikesCount() == likes.size()) {
+                    return false;
+                }
+
+                film.setLikesCount(likes.size());
+                filmPopularityIndex.putFilm(filmId, likes.size());
+
+                return true;
+
+            }, filmId);
+
+            if (changed) {
+                repaired++;
+            }
+        }
+
+        return repaired;
     }
 
     @Override
-    public void removeUserLikeOnFilm(long filmId, long userId) {
-        getFilmById(filmId).getUserFilmLike().remove(userId);
+    public void flushPendingLikes() {
+    }
+
+    private void putFilm(Film film) {
+        filmsById.put(film.getId(), film);
+        filmsInIdOrder.put(film.getId(), film);
+        filmIdsByNameReleaseDateDuration.put(nameReleaseDateDuration(film), film.getId());
+    }
+
+    private static List<Object> nameReleaseDateDuration(Film film) {
+        return Arrays.asList(film.getName(), film.getReleaseDate(), film.getDuration());
     }
 
     private long getNextId() {
-        return ++globalId;
+        return globalId.incrementAndGet();
     }
-}
\ No newline at end of file
+}
@@ -2,10 +2,16 @@ package ru.yandex.practicum.filmorate.storage.user;
 
 import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.FriendshipEdge;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
 import ru.yandex.practicum.filmorate.model.Status;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 
 public interface UserStorage {
@@ -18,8 +24,22 @@ public interface UserStorage {
 
     User getUserById(long userId);
 
+    User getUserById(long userId, Set<UserField> fields);
+
+    List<User> getUsersByIds(List<Long> userIds);
+
+    LongHashSet getAllUserIds();
+
     Collection<User> getAllUser();
 
+    Collection<User> getAllUser(Set<UserField> fields);
+
+    List<User> getUserPage(long afterId, int limit);
+
+    List<User> getUserPage(long afterId, int limit, Set<UserField> fields);
+
+    void streamAllUser(Consumer<User> consumer);
+
     void removeAllUser();
 
     void removeUserById(long userId);
@@ -40,8 +60,16 @@ public interface UserStorage {
 
     void removeFriend(long userId, long otherId);
 
+    Status addFriendship(long userId, long otherId) throws NotFoundException, ConflictException;
+
+    Status removeFriendship(long userId, long otherId) throws NotFoundException;
+
+    int addFriendshipEdges(List<FriendshipEdge> edges);
+
     Collection<User> getAllFriendsByUserId(long userId);
 
+    List<User> getFriendPageByUserId(long userId, long afterId, int limit);
+
     Collection<User> getCommonFriendsByUser(long userId, long otherId);
 
     void checkUserById(long userId) throws NotFoundException;
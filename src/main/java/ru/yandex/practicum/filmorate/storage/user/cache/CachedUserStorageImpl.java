@@ -0,0 +1,315 @@
+package ru.yandex.practicum.filmorate.storage.user.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.event.UserRemovedEvent;
+import ru.yandex.practicum.filmorate.exception.ConflictException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.FriendStatusMap;
+import ru.yandex.practicum.filmorate.model.FriendshipEdge;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
+import ru.yandex.practicum.filmorate.model.Status;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Primary
+@Component
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class CachedUserStorageImpl implements UserStorage {
+    @Qualifier("userStorage")
+    private final UserStorage userStorage;
+    private final Cache<Long, User> userCache;
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    @Override
+    public User createUser(User user) {
+        return userStorage.createUser(user);
+    }
+
+    @Override
+    public void resetGlobalId() {
+        userStorage.resetGlobalId();
+    }
+
+    @Override
+    public User updateUser(User user) {
+
+        try {
+            return userStorage.updateUser(user);
+        } finally {
+            userCache.invalidate(user.getId());
+        }
+    }
+
+    @Override
+    public User getUserById(long userId) {
+        return copyOf(userCache.get(userId, userStorage::getUserById));
+    }
+
+    @Override
+    public User getUserById(long userId, Set<UserField> fields) {
+
+        final User cached = userCache.getIfPresent(userId);
+
+        if (cached != null) {
+            return copyOf(cached);
+        }
+
+        return userStorage.getUserById(userId, fields);
+    }
+
+    @Override
+    public List<User> getUsersByIds(List<Long> userIds) {
+
+        if (userIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        final Map<Long, User> users = userCache.getAll(userIds, this::loadUsers);
+
+        return userIds
+                .stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .map(CachedUserStorageImpl::copyOf)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public LongHashSet getAllUserIds() {
+        return userStorage.getAllUserIds();
+    }
+
+    @Override
+    public Collection<User> getAllUser() {
+        return userStorage.getAllUser();
+    }
+
+    @Override
+    public Collection<User> getAllUser(Set<UserField> fields) {
+        return userStorage.getAllUser(fields);
+    }
+
+    @Override
+    public List<User> getUserPage(long afterId, int limit) {
+        return userStorage.getUserPage(afterId, limit);
+    }
+
+    @Override
+    public List<User> getUserPage(long afterId, int limit, Set<UserField> fields) {
+        return userStorage.getUserPage(afterId, limit, fields);
+    }
+
+    @Override
+    public void streamAllUser(Consumer<User> consumer) {
+        userStorage.streamAllUser(consumer);
+    }
+
+    @Override
+    public void removeAllUser() {
+
+        try {
+            userStorage.removeAllUser();
+        } finally {
+            userCache.invalidateAll();
+        }
+
+        applicationEventPublisher.publishEvent(UserRemovedEvent.allUsers());
+    }
+
+    @Override
+    public void removeUserById(long userId) {
+
+        try {
+            userStorage.removeUserById(userId);
+        } finally {
+            userCache.invalidate(userId);
+            userCache.asMap().values().removeIf(user -> user.getFriendsIdsStatus().containsKey(userId));
+        }
+
+        applicationEventPublisher.publishEvent(new UserRemovedEvent(userId));
+    }
+
+    @Override
+    public void checkUserFriendById(long userId, long otherId, boolean addOrRemove) throws ConflictException, NotFoundException {
+        userStorage.checkUserFriendById(userId, otherId, addOrRemove);
+    }
+
+    @Override
+    public void checkFriendByUserId(long userId) throws NotFoundException {
+        userStorage.checkFriendByUserId(userId);
+    }
+
+    @Override
+    public void checkUserByFriendId(long otherId) throws NotFoundException {
+        userStorage.checkUserByFriendId(otherId);
+    }
+
+    @Override
+    public void addFriend(long userId, long otherId, Status status) {
+
+        try {
+            userStorage.addFriend(userId, otherId, status);
+        } finally {
+            invalidateFriendship(userId, otherId);
+        }
+    }
+
+    @Override
+    public void updateStatusFriendShip(long userId, long otherId, Status status) {
+
+        try {
+            userStorage.updateStatusFriendShip(userId, otherId, status);
+        } finally {
+            invalidateFriendship(userId, otherId);
+        }
+    }
+
+    @Override
+    public boolean checkStatusFriendship(long userId, long otherId, Status status) {
+        return userStorage.checkStatusFriendship(userId, otherId, status);
+    }
+
+    @Override
+    public boolean checkFriendship(long userId, long otherId) {
+        return userStorage.checkFriendship(userId, otherId);
+    }
+
+    @Override
+    public void removeFriend(long userId, long otherId) {
+
+        try {
+            userStorage.removeFriend(userId, otherId);
+        } finally {
+            invalidateFriendship(userId, otherId);
+        }
+    }
+
+    @Override
+    public Status addFriendship(long userId, long otherId) throws NotFoundException, ConflictException {
+
+        try {
+            return userStorage.addFriendship(userId, otherId);
+        } finally {
+            invalidateFriendship(userId, otherId);
+        }
+    }
+
+    @Override
+    public Status removeFriendship(long userId, long otherId) throws NotFoundException {
+
+        try {
+            return userStorage.removeFriendship(userId, otherId);
+        } finally {
+            invalidateFriendship(userId, otherId);
+        }
+    }
+
+    @Override
+    public int addFriendshipEdges(List<FriendshipEdge> edges) {
+
+        try {
+            return userStorage.addFriendshipEdges(edges);
+        } finally {
+            invalidateAfterCommit(edges
+                    .stream()
+                    .flatMap(edge -> Stream.of(edge.getUserId(), edge.getFriendId()))
+                    .collect(Collectors.toSet()));
+        }
+    }
+
+    @Override
+    public Collection<User> getAllFriendsByUserId(long userId) {
+        return userStorage.getAllFriendsByUserId(userId);
+    }
+
+    @Override
+    public List<User> getFriendPageByUserId(long userId, long afterId, int limit) {
+        return userStorage.getFriendPageByUserId(userId, afterId, limit);
+    }
+
+    @Override
+    public Collection<User> getCommonFriendsByUser(long userId, long otherId) {
+        return userStorage.getCommonFriendsByUser(userId, otherId);
+    }
+
+    @Override
+    public void checkUserById(long userId) throws NotFoundException {
+
+        if (userCache.getIfPresent(userId) == null) {
+            userStorage.checkUserById(userId);
+        }
+    }
+
+    @Override
+    public void checkUserLogin(String newUserLogin) throws ConflictException {
+        userStorage.checkUserLogin(newUserLogin);
+    }
+
+    @Override
+    public void checkUserEmail(String newUserEmail) throws ConflictException {
+        userStorage.checkUserEmail(newUserEmail);
+    }
+
+    @Override
+    public void checkUserIdOnLogin(String updateUserLogin, long updateUserId) throws ConflictException {
+        userStorage.checkUserIdOnLogin(updateUserLogin, updateUserId);
+    }
+
+    @Override
+    public void checkUserIdOnEmail(String updateUserEmail, long updateUserId) throws ConflictException {
+        userStorage.checkUserIdOnEmail(updateUserEmail, updateUserId);
+    }
+
+    private void invalidateAfterCommit(Set<Long> userIds) {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            userCache.invalidateAll(userIds);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                userCache.invalidateAll(userIds);
+            }
+        });
+    }
+
+    private Map<Long, User> loadUsers(Iterable<? extends Long> userIds) {
+
+        final List<Long> missingUserIds = new ArrayList<>();
+
+        userIds.forEach(missingUserIds::add);
+
+        return userStorage.getUsersByIds(missingUserIds)
+                .stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+    }
+
+    private void invalidateFriendship(long userId, long otherId) {
+        userCache.invalidateAll(List.of(userId, otherId));
+    }
+
+    private static User copyOf(User user) {
+
+        return user
+                .toBuilder()
+                .friendsIdsStatus(new FriendStatusMap(user.getFriendsIdsStatus()))
+                .build();
+    }
+}
@@ -3,24 +3,38 @@ package ru.yandex.practicum.filmorate.storage.user.dao;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.FriendshipEdge;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
 import ru.yandex.practicum.filmorate.model.Status;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+
+import static ru.yandex.practicum.filmorate.model.UserField.*;
 
 @Repository("userStorage")
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 public class DbUserStorageImpl implements UserStorage {
+    private static final int BATCH_SIZE = 1000;
+    private static final Set<UserField> ALL_FIELDS = Collections.unmodifiableSet(EnumSet.allOf(UserField.class));
+    private static final int STREAM_FETCH_SIZE = 500;
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
     @Override
     public User createUser(User user) {
@@ -102,7 +116,7 @@ public class DbUserStorageImpl implements UserStorage {
                             "INSERT INTO friendship " +
                                     "(user_id, friend_id, status) " +
                                     "VALUES (?, ?, ?)",
-                            userBuilder.getId(), friend_id, status.toString()));
+                            userBuilder.getId(), friend_id, status.getCode()));
         }
 
         return userBuilder;
@@ -110,28 +124,146 @@ public class DbUserStorageImpl implements UserStorage {
 
     @Override
     public User getUserById(long userId) {
+        return getUserById(userId, ALL_FIELDS);
+    }
 
-        checkUserById(userId);
+    @Override
+    public User getUserById(long userId, Set<UserField> fields) {
 
         final String sql =
-                "SELECT * " +
+                "SELECT " + columnsOf(fields) + " " +
                         "FROM users " +
                         "WHERE id = ?";
 
-        return jdbcTemplate.queryForObject(sql,
-                this::makeUser,
-                userId);
+        final List<User> users = makeUsers(
+                jdbcTemplate.query(sql,
+                        (rs, rowNum) -> makeUser(rs, fields),
+                        userId),
+                fields);
+
+        if (users.isEmpty()) {
+            throw new NotFoundException("Такой пользователь c id => " + userId + " не существует");
+        }
+
+        return users.get(0);
     }
 
     @Override
-    public Collection<User> getAllUser() {
+    public List<User> getUsersByIds(List<Long> userIds) {
 
         final String sql =
                 "SELECT * " +
+                        "FROM users " +
+                        "WHERE id IN (:ids)";
+
+        final Map<Long, User> usersById = new HashMap<>();
+
+        for (int from = 0; from < userIds.size(); from += BATCH_SIZE) {
+
+            makeUsers(
+                    namedParameterJdbcTemplate.query(sql,
+                            new MapSqlParameterSource(
+                                    "ids", userIds.subList(from, Math.min(from + BATCH_SIZE, userIds.size()))),
+                            this::makeUser))
+                    .forEach(user -> usersById.put(user.getId(), user));
+        }
+
+        final List<User> users = new ArrayList<>(usersById.size());
+
+        userIds.forEach(userId -> {
+            final User user = usersById.get(userId);
+
+            if (user != null) {
+                users.add(user);
+            }
+        });
+
+        return users;
+    }
+
+    @Override
+    public LongHashSet getAllUserIds() {
+
+        final String sql =
+                "SELECT id " +
                         "FROM users";
 
-        return jdbcTemplate.query(sql,
-                this::makeUser);
+        final LongHashSet userIds = new LongHashSet();
+
+        jdbcTemplate.query(sql,
+                (RowCallbackHandler) rs -> userIds.add(rs.getLong("id")));
+
+        return userIds;
+    }
+
+    @Override
+    public Collection<User> getAllUser() {
+        return getAllUser(ALL_FIELDS);
+    }
+
+    @Override
+    public Collection<User> getAllUser(Set<UserField> fields) {
+
+        final String sql =
+                "SELECT " + columnsOf(fields) + " " +
+                        "FROM users " +
+                        "ORDER BY id";
+
+        return makeUsers(
+                jdbcTemplate.query(sql,
+                        (rs, rowNum) -> makeUser(rs, fields)),
+                fields);
+    }
+
+    @Override
+    public List<User> getUserPage(long afterId, int limit) {
+        return getUserPage(afterId, limit, ALL_FIELDS);
+    }
+
+    @Override
+    public List<User> getUserPage(long afterId, int limit, Set<UserField> fields) {
+
+        final String sql =
+                "SELECT " + columnsOf(fields) + " " +
+                        "FROM users " +
+                        "WHERE id > ? " +
+                        "ORDER BY id " +
+                        "LIMIT ?";
+
+        return makeUsers(
+                jdbcTemplate.query(sql,
+                        (rs, rowNum) -> makeUser(rs, fields),
+                        afterId, limit),
+                fields);
+    }
+
+    @Override
+    public void streamAllUser(Consumer<User> consumer) {
+
+        final String sql =
+                "SELECT * " +
+                        "FROM users " +
+                        "ORDER BY id";
+
+        final List<User> chunk = new ArrayList<>(STREAM_FETCH_SIZE);
+
+        jdbcTemplate.query(connection -> {
+                    final PreparedStatement statement = connection.prepareStatement(sql,
+                            ResultSet.TYPE_FORWARD_ONLY,
+                            ResultSet.CONCUR_READ_ONLY);
+                    statement.setFetchSize(STREAM_FETCH_SIZE);
+                    return statement;
+                },
+                (RowCallbackHandler) rs -> {
+                    chunk.add(makeUser(rs, rs.getRow()));
+
+                    if (chunk.size() == STREAM_FETCH_SIZE) {
+                        makeUsers(chunk).forEach(consumer);
+                        chunk.clear();
+                    }
+                });
+
+        makeUsers(chunk).forEach(consumer);
     }
 
     @Override
@@ -140,6 +272,10 @@ public class DbUserStorageImpl implements UserStorage {
         jdbcTemplate.update(
                 "DELETE FROM user_film_like");
 
+        jdbcTemplate.update(
+                "UPDATE films " +
+                        "SET likes_count = 0");
+
         jdbcTemplate.update(
                 "DELETE FROM friendship");
 
@@ -152,10 +288,17 @@ public class DbUserStorageImpl implements UserStorage {
     }
 
     @Override
+    @Transactional
     public void removeUserById(long userId) {
 
         checkUserById(userId);
 
+        jdbcTemplate.update(
+                "UPDATE films " +
+                        "SET likes_count = likes_count - 1 " +
+                        "WHERE id IN (SELECT film_id FROM user_film_like WHERE user_id = ?)",
+                userId);
+
         jdbcTemplate.update(
                 "DELETE FROM users " +
                         "WHERE id = ?",
@@ -176,7 +319,7 @@ public class DbUserStorageImpl implements UserStorage {
 
         if (addOrRemove) {
 
-            if (rows.next() && Status.valueOf(rows.getString("status")) == Status.FRIENDSHIP) {
+            if (rows.next() && Status.fromCode(rows.getInt("status")) == Status.FRIENDSHIP) {
                 throw new ConflictException("У пользователя с id => " + userId
                         + " уже существует дружба с id => " + otherId);
             }
@@ -229,7 +372,7 @@ public class DbUserStorageImpl implements UserStorage {
                 "INSERT INTO friendship " +
                         "(user_id, friend_id, status) " +
                         "VALUES (?, ?, ?)",
-                userId, otherId, status.toString());
+                userId, otherId, status.getCode());
     }
 
     @Override
@@ -240,7 +383,7 @@ public class DbUserStorageImpl implements UserStorage {
                         "WHERE user_id = ? " +
                         "AND friend_id = ? " +
                         "AND user_id <> friend_id",
-                status.toString(), userId, otherId);
+                status.getCode(), userId, otherId);
     }
 
     @Override
@@ -252,7 +395,7 @@ public class DbUserStorageImpl implements UserStorage {
                         "WHERE user_id = ? " +
                         "AND friend_id = ? " +
                         "AND status = ?",
-                userId, otherId, status.toString());
+                userId, otherId, status.getCode());
 
         return rows.next();
     }
@@ -279,6 +422,135 @@ public class DbUserStorageImpl implements UserStorage {
                 userId, otherId);
     }
 
+    @Override
+    @Transactional
+    public Status addFriendship(long userId, long otherId) throws NotFoundException, ConflictException {
+
+        final List<Long> lockedUserIds = jdbcTemplate.queryForList(
+                "SELECT id " +
+                        "FROM users " +
+                        "WHERE id IN (?, ?) " +
+                        "FOR UPDATE",
+                Long.class,
+                userId, otherId);
+
+        if (!lockedUserIds.contains(userId)) {
+            throw new NotFoundException("Такой пользователь c id => " + userId + " не существует");
+        }
+        if (!lockedUserIds.contains(otherId)) {
+            throw new NotFoundException("Такой пользователь c id => " + otherId + " не существует");
+        }
+
+        final Map<Long, Status> edges = getFriendshipEdges(userId, otherId, false);
+
+        if (edges.get(userId) == Status.FRIENDSHIP) {
+            throw new ConflictException("У пользователя с id => " + userId
+                    + " уже существует дружба с id => " + otherId);
+        }
+        if (edges.get(otherId) == Status.FRIENDSHIP) {
+            throw new ConflictException("У пользователя с id => " + otherId
+                    + " уже существует дружба с id => " + userId);
+        }
+
+        final Status userStatus = edges.get(userId) == Status.APPLICATION ? Status.FRIENDSHIP : Status.SUBSCRIPTION;
+        final Status otherStatus = userStatus == Status.FRIENDSHIP ? Status.FRIENDSHIP : Status.APPLICATION;
+
+        jdbcTemplate.batchUpdate(
+                "MERGE INTO friendship " +
+                        "KEY (user_id, friend_id) " +
+                        "VALUES (?, ?, ?)",
+                List.of(
+                        new Object[]{userId, otherId, userStatus.getCode()},
+                        new Object[]{otherId, userId, otherStatus.getCode()}));
+
+        return userStatus;
+    }
+
+    @Override
+    @Transactional
+    public int addFriendshipEdges(List<FriendshipEdge> edges) {
+
+        final String sql =
+                "MERGE INTO friendship f " +
+                        "USING (VALUES (CAST(? AS INT), CAST(? AS INT), CAST(? AS SMALLINT))) e (user_id, friend_id, status) " +
+                        "ON f.user_id = e.user_id AND f.friend_id = e.friend_id " +
+                        "WHEN MATCHED AND f.status <> e.status THEN UPDATE SET status = e.status " +
+                        "WHEN NOT MATCHED THEN INSERT (user_id, friend_id, status) VALUES (e.user_id, e.friend_id, e.status)";
+
+        final List<FriendshipEdge> rows = new ArrayList<>(edges.size() * 2);
+
+        edges.forEach(edge -> {
+            rows.add(edge);
+            rows.add(edge.reverse());
+        });
+
+        final int[][] changedRows = jdbcTemplate.batchUpdate(sql,
+                rows,
+                BATCH_SIZE,
+                (ps, edge) -> {
+                    ps.setLong(1, edge.getUserId());
+                    ps.setLong(2, edge.getFriendId());
+                    ps.setInt(3, edge.getStatus().getCode());
+                });
+
+        int changed = 0;
+        int row = 0;
+        boolean pairChanged = false;
+
+        for (int[] batch : changedRows) {
+            for (int rowsChanged : batch) {
+                pairChanged |= rowsChanged > 0;
+
+                if (row++ % 2 == 1) {
+                    changed += pairChanged ? 1 : 0;
+                    pairChanged = false;
+                }
+            }
+        }
+
+        return changed;
+    }
+
+    @Override
+    @Transactional
+    public Status removeFriendship(long userId, long otherId) throws NotFoundException {
+
+        final Map<Long, Status> edges = getFriendshipEdges(userId, otherId, true);
+
+        final Status userStatus = edges.get(userId);
+        final Status otherStatus = edges.get(otherId);
+
+        if (userStatus == null) {
+            checkFriendByUserId(userId);
+
+            throw new NotFoundException("У пользователя с id => " + userId
+                    + " не существует друга/заявки/подписки c id => " + otherId);
+        }
+
+        if (userStatus == Status.FRIENDSHIP) {
+
+            if (otherStatus == null) {
+                throw new NotFoundException("У пользователя с id => " + otherId
+                        + " не существует друга/заявки/подписки c id => " + userId);
+            }
+
+            removeFriend(userId, otherId);
+            updateStatusFriendShip(otherId, userId, Status.SUBSCRIPTION);
+
+        } else if (otherStatus == Status.APPLICATION) {
+
+            jdbcTemplate.update(
+                    "DELETE FROM friendship " +
+                            "WHERE user_id IN (?, ?) AND friend_id IN (?, ?) AND user_id <> friend_id",
+                    userId, otherId, otherId, userId);
+
+        } else {
+            removeFriend(userId, otherId);
+        }
+
+        return userStatus;
+    }
+
     @Override
     public Collection<User> getAllFriendsByUserId(long userId) {
 
@@ -287,12 +559,31 @@ public class DbUserStorageImpl implements UserStorage {
                         "FROM users " +
                         "JOIN friendship ON users.id = friendship.friend_id " +
                         "WHERE friendship.user_id = ? " +
-                        "AND (status LIKE 'FRIENDSHIP'" +
-                        "OR status LIKE 'SUBSCRIPTION')";
+                        "AND friendship.status IN (?, ?)";
 
-        return jdbcTemplate.query(sql,
-                this::makeUser,
-                userId);
+        return makeUsers(
+                jdbcTemplate.query(sql,
+                        this::makeUser,
+                        userId, Status.FRIENDSHIP.getCode(), Status.SUBSCRIPTION.getCode()));
+    }
+
+    @Override
+    public List<User> getFriendPageByUserId(long userId, long afterId, int limit) {
+
+        final String sql =
+                "SELECT users.id, users.email, users.login, users.name, users.birthday " +
+                        "FROM users " +
+                        "JOIN friendship ON users.id = friendship.friend_id " +
+                        "WHERE friendship.user_id = ? " +
+                        "AND friendship.friend_id > ? " +
+                        "AND friendship.status IN (?, ?) " +
+                        "ORDER BY friendship.friend_id " +
+                        "LIMIT ?";
+
+        return makeUsers(
+                jdbcTemplate.query(sql,
+                        this::makeUser,
+                        userId, afterId, Status.FRIENDSHIP.getCode(), Status.SUBSCRIPTION.getCode(), limit));
     }
 
     @Override
@@ -304,12 +595,12 @@ public class DbUserStorageImpl implements UserStorage {
                         "JOIN friendship AS fs1 ON fs1.friend_id = users.id " +
                         "JOIN friendship AS fs2 ON fs1.friend_id = fs2.friend_id " +
                         "WHERE fs1.user_id = ? AND fs2.user_id = ? " +
-                        "AND (fs2.status LIKE 'FRIENDSHIP' " +
-                        "OR fs2.status LIKE 'SUBSCRIPTION')";
+                        "AND fs2.status IN (?, ?)";
 
-        return jdbcTemplate.query(sql,
-                this::makeUser,
-                userId, otherId);
+        return makeUsers(
+                jdbcTemplate.query(sql,
+                        this::makeUser,
+                        userId, otherId, Status.FRIENDSHIP.getCode(), Status.SUBSCRIPTION.getCode()));
     }
 
     @Override
@@ -404,45 +695,100 @@ public class DbUserStorageImpl implements UserStorage {
         }
     }
 
-    private User makeUser(ResultSet resultSet, int rowNum) throws SQLException {
+    private Map<Long, Status> getFriendshipEdges(long userId, long otherId, boolean forUpdate) {
 
-        final String sql =
-                "SELECT friend_id, status " +
+        final Map<Long, Status> edges = new HashMap<>();
+
+        jdbcTemplate.query(
+                "SELECT user_id, status " +
                         "FROM friendship " +
-                        "WHERE friendship.user_id = ?";
+                        "WHERE user_id IN (?, ?) AND friend_id IN (?, ?) AND user_id <> friend_id" +
+                        (forUpdate ? " FOR UPDATE" : ""),
+                (RowCallbackHandler) rs -> edges.put(rs.getLong("user_id"), Status.fromCode(rs.getInt("status"))),
+                userId, otherId, otherId, userId);
+
+        return edges;
+    }
+
+    private static String columnsOf(Set<UserField> fields) {
+
+        if (fields.containsAll(ALL_FIELDS)) {
+            return "*";
+        }
+
+        final StringJoiner columns = new StringJoiner(", ");
 
-        final User userBuilder = User
+        columns.add(ID.getColumn());
+
+        fields.stream()
+                .filter(field -> field != ID && field.getColumn() != null)
+                .forEach(field -> columns.add(field.getColumn()));
+
+        return columns.toString();
+    }
+
+    private User makeUser(ResultSet resultSet, int rowNum) throws SQLException {
+        return makeUser(resultSet, ALL_FIELDS);
+    }
+
+    private User makeUser(ResultSet resultSet, Set<UserField> fields) throws SQLException {
+
+        final User.UserBuilder user = User
                 .builder()
-                .id(resultSet.getLong("id"))
-                .email(resultSet.getString("email"))
-                .login(resultSet.getString("login"))
-                .name(resultSet.getString("name"))
-                .birthday(resultSet.getDate("birthday").toLocalDate())
-                .build();
+                .id(resultSet.getLong("id"));
 
-        userBuilder
-                .getFriendsIdsStatus()
-                .putAll(
-                        (Map<? extends Long, ? extends Status>) jdbcTemplate.query(sql,
-                                        this::makeFriend,
-                                        userBuilder.getId()
-                                )
-                                .stream()
-                                .flatMap(
-                                        map -> map.entrySet()
-                                                .stream()
-                                )
-                                .collect(
-                                        Collectors.toMap(
-                                                Map.Entry::getKey,
-                                                Map.Entry::getValue,
-                                                (oldValue, newValue) -> newValue,
-                                                HashMap::new)));
+        if (fields.contains(EMAIL)) {
+            user.email(resultSet.getString("email"));
+        }
+        if (fields.contains(LOGIN)) {
+            user.login(resultSet.getString("login"));
+        }
+        if (fields.contains(NAME)) {
+            user.name(resultSet.getString("name"));
+        }
+        if (fields.contains(BIRTHDAY)) {
+            user.birthday(resultSet.getDate("birthday").toLocalDate());
+        }
 
-        return userBuilder;
+        return user.build();
+    }
+
+    private List<User> makeUsers(List<User> users) {
+        return makeUsers(users, ALL_FIELDS);
     }
 
-    private Map<Long, Status> makeFriend(ResultSet rs, int rowNum) throws SQLException {
-        return Map.of(rs.getLong("friend_id"), Status.valueOf(rs.getString("status")));
+    private List<User> makeUsers(List<User> users, Set<UserField> fields) {
+
+        if (users.isEmpty() || !fields.contains(FRIENDS_IDS_STATUS)) {
+            return users;
+        }
+
+        final Map<Long, List<User>> usersById = new HashMap<>();
+
+        users.forEach(user -> usersById.computeIfAbsent(user.getId(), id -> new ArrayList<>()).add(user));
+
+        final List<Long> userIds = new ArrayList<>(usersById.keySet());
+
+        final String sql =
+                "SELECT user_id, friend_id, status " +
+                        "FROM friendship " +
+                        "WHERE user_id IN (:ids)";
+
+        for (int from = 0; from < userIds.size(); from += BATCH_SIZE) {
+
+            namedParameterJdbcTemplate.query(sql,
+                    new MapSqlParameterSource(
+                            "ids", userIds.subList(from, Math.min(from + BATCH_SIZE, userIds.size()))),
+                    (RowCallbackHandler) rs -> {
+                        final long friendId = rs.getLong("friend_id");
+                        final Status status = Status.fromCode(rs.getInt("status"));
+
+                        usersById
+                                .get(rs.getLong("user_id"))
+                                .forEach(user -> user.getFriendsIdsStatus().put(friendId, status));
+                    });
+        }
+
+        return users;
     }
-}
\ No newline at end of file
+}
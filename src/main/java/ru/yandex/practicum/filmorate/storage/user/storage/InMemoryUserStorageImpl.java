@@ -5,25 +5,38 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.FriendStatusMap;
+import ru.yandex.practicum.filmorate.model.FriendshipEdge;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
 import ru.yandex.practicum.filmorate.model.Status;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.util.Collection;
-import java.util.TreeMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import static java.util.stream.Collectors.toList;
-import static ru.yandex.practicum.filmorate.model.Status.FRIENDSHIP;
-import static ru.yandex.practicum.filmorate.model.Status.SUBSCRIPTION;
+import static ru.yandex.practicum.filmorate.model.Status.*;
 
 
 @Component
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 public class InMemoryUserStorageImpl implements UserStorage {
-    private final TreeMap<Long, User> users = new TreeMap<>();
-    private final TreeMap<String, Long> userEmails = new TreeMap<>();
-    private final TreeMap<String, Long> userLogins = new TreeMap<>();
-    private long globalId = 0;
+    private static final int LOCK_STRIPES = 64;
+    private final ConcurrentSkipListMap<Long, User> users = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, Long> userEmails = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> userLogins = new ConcurrentHashMap<>();
+    private final StripedLocks locks = new StripedLocks(LOCK_STRIPES);
+    private final AtomicLong globalId = new AtomicLong();
 
     @Override
     public User createUser(User user) {
@@ -43,42 +56,61 @@ public class InMemoryUserStorageImpl implements UserStorage {
                     .build();
         }
 
-        users.put(userBuilder.getId(), userBuilder);
-        userEmails.put(userBuilder.getEmail(), userBuilder.getId());
-        userLogins.put(userBuilder.getLogin(), userBuilder.getId());
+        return locks.call(() -> {
 
-        return userBuilder;
+            checkUserLogin(userBuilder.getLogin());
+            checkUserEmail(userBuilder.getEmail());
+
+            users.put(userBuilder.getId(), userBuilder);
+            userEmails.put(userBuilder.getEmail(), userBuilder.getId());
+            userLogins.put(userBuilder.getLogin(), userBuilder.getId());
+
+            return userBuilder;
+
+        }, userBuilder.getId(), emailKey(userBuilder.getEmail()), loginKey(userBuilder.getLogin()));
     }
 
     @Override
     public void resetGlobalId() {
-        globalId = 0;
+        globalId.set(0);
     }
 
     @Override
     public User updateUser(User user) {
 
-        final User oldUser = users.get(user.getId());
-        userEmails.remove(oldUser.getEmail());
-        userLogins.remove(oldUser.getLogin());
+        final User userBuilder = user.getName() == null
+                ? user.toBuilder().name(user.getLogin()).build()
+                : user;
 
-        if (user.getName() == null) {
-            final User userBuilder = user
-                    .toBuilder()
-                    .name(user.getLogin())
-                    .build();
-            users.put(userBuilder.getId(), userBuilder);
-            userEmails.put(userBuilder.getEmail(), userBuilder.getId());
-            userLogins.put(userBuilder.getLogin(), userBuilder.getId());
+        while (true) {
+            final User oldUser = getUserById(userBuilder.getId());
 
-            return userBuilder;
-        }
+            final User updatedUser = locks.call(() -> {
 
-        users.put(user.getId(), user);
-        userEmails.put(user.getEmail(), user.getId());
-        userLogins.put(user.getLogin(), user.getId());
+                if (users.get(oldUser.getId()) != oldUser) {
+                    return null;
+                }
 
-        return user;
+                checkUserIdOnLogin(userBuilder.getLogin(), userBuilder.getId());
+                checkUserIdOnEmail(userBuilder.getEmail(), userBuilder.getId());
+
+                userEmails.remove(oldUser.getEmail(), oldUser.getId());
+                userLogins.remove(oldUser.getLogin(), oldUser.getId());
+
+                users.put(userBuilder.getId(), userBuilder);
+                userEmails.put(userBuilder.getEmail(), userBuilder.getId());
+                userLogins.put(userBuilder.getLogin(), userBuilder.getId());
+
+                return userBuilder;
+
+            }, oldUser.getId(),
+                    emailKey(oldUser.getEmail()), loginKey(oldUser.getLogin()),
+                    emailKey(userBuilder.getEmail()), loginKey(userBuilder.getLogin()));
+
+            if (updatedUser != null) {
+                return updatedUser;
+            }
+        }
     }
 
     @Override
@@ -93,12 +125,57 @@ public class InMemoryUserStorageImpl implements UserStorage {
         return user;
     }
 
+    @Override
+    public List<User> getUsersByIds(List<Long> userIds) {
+        return userIds
+                .stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(toList());
+    }
+
+    @Override
+    public LongHashSet getAllUserIds() {
+        return new LongHashSet(users.keySet());
+    }
+
     @Override
     public Collection<User> getAllUser() {
 
         return users.values();
     }
 
+    @Override
+    public User getUserById(long userId, Set<UserField> fields) {
+        return getUserById(userId);
+    }
+
+    @Override
+    public Collection<User> getAllUser(Set<UserField> fields) {
+        return getAllUser();
+    }
+
+    @Override
+    public List<User> getUserPage(long afterId, int limit, Set<UserField> fields) {
+        return getUserPage(afterId, limit);
+    }
+
+    @Override
+    public List<User> getUserPage(long afterId, int limit) {
+
+        return users
+                .tailMap(afterId, false)
+                .values()
+                .stream()
+                .limit(limit)
+                .collect(toList());
+    }
+
+    @Override
+    public void streamAllUser(Consumer<User> consumer) {
+        users.values().forEach(consumer);
+    }
+
     @Override
     public void removeAllUser() {
 
@@ -112,14 +189,24 @@ public class InMemoryUserStorageImpl implements UserStorage {
     @Override
     public void removeUserById(long userId) {
 
-        final User user = users.remove(userId);
+        boolean removed = false;
 
-        if (user == null) {
-            throw new NotFoundException("Такой пользователь c id => " + userId + " не существует");
-        }
+        while (!removed) {
+            final User user = getUserById(userId);
+
+            removed = locks.call(() -> {
+
+                if (!users.remove(userId, user)) {
+                    return false;
+                }
 
-        userLogins.remove(user.getLogin());
-        userEmails.remove(user.getEmail());
+                userLogins.remove(user.getLogin(), userId);
+                userEmails.remove(user.getEmail(), userId);
+
+                return true;
+
+            }, userId, emailKey(user.getEmail()), loginKey(user.getLogin()));
+        }
     }
 
     @Override
@@ -165,12 +252,12 @@ public class InMemoryUserStorageImpl implements UserStorage {
 
     @Override
     public void addFriend(long userId, long otherId, Status status) {
-        users.get(userId).getFriendsIdsStatus().put(otherId, status);
+        locks.run(() -> changeFriends(userId, friends -> friends.put(otherId, status)), userId);
     }
 
     @Override
     public void updateStatusFriendShip(long userId, long otherId, Status status) {
-        users.get(userId).getFriendsIdsStatus().put(otherId, status);
+        locks.run(() -> changeFriends(userId, friends -> friends.put(otherId, status)), userId);
     }
 
     @Override
@@ -189,7 +276,104 @@ public class InMemoryUserStorageImpl implements UserStorage {
 
     @Override
     public void removeFriend(long userId, long otherId) {
-        users.get(userId).getFriendsIdsStatus().remove(otherId);
+        locks.run(() -> changeFriends(userId, friends -> friends.remove(otherId)), userId);
+    }
+
+    @Override
+    public Status addFriendship(long userId, long otherId) throws NotFoundException, ConflictException {
+
+        return locks.call(() -> {
+
+            final Status userStatus = getUserById(userId).getFriendsIdsStatus().get(otherId);
+            final Status otherStatus = getUserById(otherId).getFriendsIdsStatus().get(userId);
+
+            if (userStatus == FRIENDSHIP) {
+                throw new ConflictException("У пользователя с id => " + userId
+                        + " уже существует дружба с id => " + otherId);
+            }
+            if (otherStatus == FRIENDSHIP) {
+                throw new ConflictException("У пользователя с id => " + otherId
+                        + " уже существует дружба с id => " + userId);
+            }
+
+            if (userStatus == APPLICATION) {
+                changeFriends(userId, friends -> friends.put(otherId, FRIENDSHIP));
+                changeFriends(otherId, friends -> friends.put(userId, FRIENDSHIP));
+                return FRIENDSHIP;
+            }
+
+            changeFriends(userId, friends -> friends.put(otherId, SUBSCRIPTION));
+            changeFriends(otherId, friends -> friends.put(userId, APPLICATION));
+            return SUBSCRIPTION;
+
+        }, userId, otherId);
+    }
+
+    @Override
+    public int addFriendshipEdges(List<FriendshipEdge> edges) {
+
+        int changed = 0;
+
+        for (FriendshipEdge edge : edges) {
+
+            final boolean edgeChanged = locks.call(() -> {
+
+                final User user = users.get(edge.getUserId());
+                final User friend = users.get(edge.getFriendId());
+
+                if (user == null
+                        || friend == null
+                        || user.getFriendsIdsStatus().get(edge.getFriendId()) == edge.getStatus()
+                        && friend.getFriendsIdsStatus().get(edge.getUserId()) == edge.getStatus().reverse()) {
+                    return false;
+                }
+
+                changeFriends(edge.getUserId(), friends -> friends.put(edge.getFriendId(), edge.getStatus()));
+                changeFriends(edge.getFriendId(), friends -> friends.put(edge.getUserId(), edge.getStatus().reverse()));
+
+                return true;
+
+            }, edge.getUserId(), edge.getFriendId());
+
+            if (edgeChanged) {
+                changed++;
+            }
+        }
+
+        return changed;
+    }
+
+    @Override
+    public Status removeFriendship(long userId, long otherId) throws NotFoundException {
+
+        return locks.call(() -> {
+
+            checkUserById(userId);
+            checkFriendByUserId(userId);
+            checkUserFriendById(userId, otherId, false);
+
+            final Status userStatus = users.get(userId).getFriendsIdsStatus().get(otherId);
+
+            if (userStatus == FRIENDSHIP) {
+
+                checkUserFriendById(otherId, userId, false);
+
+                changeFriends(userId, friends -> friends.remove(otherId));
+                changeFriends(otherId, friends -> friends.put(userId, SUBSCRIPTION));
+
+            } else {
+
+                final User other = users.get(otherId);
+
+                if (other != null && other.getFriendsIdsStatus().get(userId) == APPLICATION) {
+                    changeFriends(otherId, friends -> friends.remove(userId));
+                }
+                changeFriends(userId, friends -> friends.remove(otherId));
+            }
+
+            return userStatus;
+
+        }, userId, otherId);
     }
 
     @Override
@@ -202,6 +386,23 @@ public class InMemoryUserStorageImpl implements UserStorage {
                 .filter(entry -> entry.getValue().equals(FRIENDSHIP)
                         || entry.getValue().equals(SUBSCRIPTION))
                 .map(entry -> users.get(entry.getKey()))
+                .filter(Objects::nonNull)
+                .collect(toList());
+    }
+
+    @Override
+    public List<User> getFriendPageByUserId(long userId, long afterId, int limit) {
+
+        return users.get(userId)
+                .getFriendsIdsStatus()
+                .tailMap(afterId, false)
+                .entrySet()
+                .stream()
+                .filter(entry -> entry.getValue().equals(FRIENDSHIP)
+                        || entry.getValue().equals(SUBSCRIPTION))
+                .limit(limit)
+                .map(entry -> users.get(entry.getKey()))
+                .filter(Objects::nonNull)
                 .collect(toList());
     }
 
@@ -217,6 +418,7 @@ public class InMemoryUserStorageImpl implements UserStorage {
                         || users.get(otherUserId).getFriendsIdsStatus().containsKey(entry.getKey())
                         && entry.getValue().equals(SUBSCRIPTION))
                 .map(entry -> users.get(entry.getKey()))
+                .filter(Objects::nonNull)
                 .collect(toList());
     }
 
@@ -273,7 +475,25 @@ public class InMemoryUserStorageImpl implements UserStorage {
         }
     }
 
+    private void changeFriends(long userId, Consumer<FriendStatusMap> change) {
+
+        final User user = getUserById(userId);
+        final FriendStatusMap friends = new FriendStatusMap(user.getFriendsIdsStatus());
+
+        change.accept(friends);
+
+        users.put(userId, user.toBuilder().friendsIdsStatus(friends).build());
+    }
+
+    private static String emailKey(String email) {
+        return "email:" + email;
+    }
+
+    private static String loginKey(String login) {
+        return "login:" + login;
+    }
+
     private long getNextId() {
-        return ++globalId;
+        return globalId.incrementAndGet();
     }
 }
@@ -1,12 +0,0 @@
-MERGE INTO mpas KEY (id) VALUES (1, 'G');
-MERGE INTO mpas KEY (id) VALUES (2, 'PG');
-MERGE INTO mpas KEY (id) VALUES (3, 'PG-13');
-MERGE INTO mpas KEY (id) VALUES (4, 'R');
-MERGE INTO mpas KEY (id) VALUES (5, 'NC-17');
-
-INSERT INTO genres (name) VALUES ('Комедия');
-INSERT INTO genres (name) VALUES ('Драма');
-INSERT INTO genres (name) VALUES ('Мультфильм');
-INSERT INTO genres (name) VALUES ('Триллер');
-INSERT INTO genres (name) VALUES ('Документальный');
-INSERT INTO genres (name) VALUES ('Боевик');
\ No newline at end of file
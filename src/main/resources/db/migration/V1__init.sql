@@ -1,5 +1,3 @@
-DROP TABLE IF EXISTS film_genre, film_mpa, friendship, user_film_like, genres, mpas, users, films;
-
 CREATE TABLE IF NOT EXISTS users (
                                             id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
                                             email VARCHAR(64) UNIQUE NOT NULL,
@@ -47,3 +45,16 @@ CREATE TABLE IF NOT EXISTS user_film_like (
                                             user_id INT NOT NULL REFERENCES users(id) ON DELETE CASCADE ON UPDATE NO ACTION,
                                             film_id INT NOT NULL REFERENCES films(id) ON DELETE CASCADE ON UPDATE NO ACTION
 );
+
+MERGE INTO mpas KEY (id) VALUES (1, 'G');
+MERGE INTO mpas KEY (id) VALUES (2, 'PG');
+MERGE INTO mpas KEY (id) VALUES (3, 'PG-13');
+MERGE INTO mpas KEY (id) VALUES (4, 'R');
+MERGE INTO mpas KEY (id) VALUES (5, 'NC-17');
+
+INSERT INTO genres (name) SELECT 'Комедия' WHERE NOT EXISTS (SELECT 1 FROM genres WHERE name = 'Комедия');
+INSERT INTO genres (name) SELECT 'Драма' WHERE NOT EXISTS (SELECT 1 FROM genres WHERE name = 'Драма');
+INSERT INTO genres (name) SELECT 'Мультфильм' WHERE NOT EXISTS (SELECT 1 FROM genres WHERE name = 'Мультфильм');
+INSERT INTO genres (name) SELECT 'Триллер' WHERE NOT EXISTS (SELECT 1 FROM genres WHERE name = 'Триллер');
+INSERT INTO genres (name) SELECT 'Документальный' WHERE NOT EXISTS (SELECT 1 FROM genres WHERE name = 'Документальный');
+INSERT INTO genres (name) SELECT 'Боевик' WHERE NOT EXISTS (SELECT 1 FROM genres WHERE name = 'Боевик');
@@ -0,0 +1,19 @@
+ALTER TABLE user_film_like DROP CONSTRAINT IF EXISTS user_film_like_user_fk;
+ALTER TABLE user_film_like DROP CONSTRAINT IF EXISTS user_film_like_film_fk;
+ALTER TABLE user_film_like DROP CONSTRAINT IF EXISTS user_film_like_pk;
+
+CREATE TABLE user_film_like_copy (
+                                            user_id INT NOT NULL,
+                                            film_id INT NOT NULL,
+                                            CONSTRAINT user_film_like_pk PRIMARY KEY (user_id, film_id),
+                                            CONSTRAINT user_film_like_user_fk FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE ON UPDATE NO ACTION,
+                                            CONSTRAINT user_film_like_film_fk FOREIGN KEY (film_id) REFERENCES films(id) ON DELETE CASCADE ON UPDATE NO ACTION
+);
+
+INSERT INTO user_film_like_copy (user_id, film_id)
+SELECT DISTINCT user_id, film_id
+FROM user_film_like;
+
+DROP TABLE user_film_like;
+
+ALTER TABLE user_film_like_copy RENAME TO user_film_like;
@@ -0,0 +1,29 @@
+ALTER TABLE friendship DROP CONSTRAINT IF EXISTS friendship_pk;
+DROP INDEX IF EXISTS friendship_friend_id_status_idx;
+
+CREATE TABLE friendship_copy (
+                                              user_id INT NOT NULL,
+                                              friend_id INT NOT NULL,
+                                              status SMALLINT NOT NULL CHECK (status IN (1, 2, 3)),
+                                              CONSTRAINT friendship_pk PRIMARY KEY (user_id, friend_id),
+                                              CONSTRAINT friendship_user_fk FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE ON UPDATE NO ACTION,
+                                              CONSTRAINT friendship_friend_fk FOREIGN KEY (friend_id) REFERENCES users(id) ON DELETE CASCADE ON UPDATE NO ACTION
+);
+
+INSERT INTO friendship_copy (user_id, friend_id, status)
+SELECT user_id,
+       friend_id,
+       MIN(CASE CAST(status AS VARCHAR(64))
+               WHEN 'FRIENDSHIP' THEN 1
+               WHEN 'SUBSCRIPTION' THEN 2
+               WHEN 'APPLICATION' THEN 3
+               ELSE CAST(status AS SMALLINT)
+           END)
+FROM friendship
+GROUP BY user_id, friend_id;
+
+DROP TABLE friendship;
+
+ALTER TABLE friendship_copy RENAME TO friendship;
+
+CREATE INDEX friendship_friend_id_status_idx ON friendship (friend_id, status);
@@ -0,0 +1,36 @@
+CREATE TABLE film_genre_copy (
+                                            film_id INT NOT NULL,
+                                            genre_id INT NOT NULL,
+                                            CONSTRAINT film_genre_pk PRIMARY KEY (film_id, genre_id),
+                                            CONSTRAINT film_genre_film_fk FOREIGN KEY (film_id) REFERENCES films(id) ON DELETE CASCADE ON UPDATE NO ACTION,
+                                            CONSTRAINT film_genre_genre_fk FOREIGN KEY (genre_id) REFERENCES genres(id) ON DELETE CASCADE ON UPDATE NO ACTION
+);
+
+INSERT INTO film_genre_copy (film_id, genre_id)
+SELECT DISTINCT film_id, genre_id
+FROM film_genre;
+
+DROP TABLE film_genre;
+
+ALTER TABLE film_genre_copy RENAME TO film_genre;
+
+CREATE TABLE film_mpa_copy (
+                                            film_id INT NOT NULL,
+                                            mpa_id INT NOT NULL,
+                                            CONSTRAINT film_mpa_pk PRIMARY KEY (film_id),
+                                            CONSTRAINT film_mpa_film_fk FOREIGN KEY (film_id) REFERENCES films(id) ON DELETE CASCADE ON UPDATE NO ACTION,
+                                            CONSTRAINT film_mpa_mpa_fk FOREIGN KEY (mpa_id) REFERENCES mpas(id) ON DELETE CASCADE ON UPDATE NO ACTION
+);
+
+INSERT INTO film_mpa_copy (film_id, mpa_id)
+SELECT film_id, MAX(mpa_id)
+FROM film_mpa
+GROUP BY film_id;
+
+DROP TABLE film_mpa;
+
+ALTER TABLE film_mpa_copy RENAME TO film_mpa;
+
+CREATE INDEX user_film_like_film_id_user_id_idx ON user_film_like (film_id, user_id);
+
+CREATE INDEX genres_name_idx ON genres (name);
@@ -12,13 +12,16 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
 
 import java.time.LocalDate;
 import java.util.List;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -32,6 +35,7 @@ public class FilmControllerTest {
     private final MockMvc mockMvc;
     private final ObjectMapper objectMapper;
     private final FilmService filmService;
+    private final UserService userService;
 
 
     private final Film film1 = Film
@@ -118,6 +122,366 @@ public class FilmControllerTest {
     }
 
 
+    @Test
+    @SneakyThrows
+    void getFilmPagesByCursorTest() {
+        for (int i = 1; i <= 5; i++) {
+            final Film film = Film
+                    .builder()
+                    .name("Film " + i)
+                    .description("Description " + i)
+                    .releaseDate(LocalDate.of(2000, 1, i))
+                    .duration(100)
+                    .build();
+
+            mockMvc.perform(post("/films")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(film)))
+                    .andExpect(status()
+                            .isCreated());
+        }
+
+        final String nextCursor = mockMvc
+                .perform(get("/films")
+                        .param("limit", "2"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$[*]", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value("1"))
+                .andExpect(jsonPath("$[1].id").value("2"))
+                .andExpect(header()
+                        .exists("X-Next-Cursor"))
+                .andReturn()
+                .getResponse()
+                .getHeader("X-Next-Cursor");
+
+        final String lastCursor = mockMvc
+                .perform(get("/films")
+                        .param("after", nextCursor)
+                        .param("limit", "2"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$[0].id").value("3"))
+                .andExpect(jsonPath("$[1].id").value("4"))
+                .andReturn()
+                .getResponse()
+                .getHeader("X-Next-Cursor");
+
+        mockMvc.perform(get("/films")
+                        .param("after", lastCursor)
+                        .param("limit", "2"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$[*]", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value("5"))
+                .andExpect(header()
+                        .doesNotExist("X-Next-Cursor"));
+
+        mockMvc.perform(get("/films")
+                        .param("after", "not-a-cursor")
+                        .param("limit", "2"))
+                .andExpect(status()
+                        .isBadRequest());
+    }
+
+
+    @Test
+    @SneakyThrows
+    void bulkImportFilmsTest() {
+        final String existingFilm = objectMapper.writeValueAsString(film1);
+        final Film existing = filmService.createFilm(film1);
+
+        final String films = "["
+                + existingFilm + ","
+                + objectMapper.writeValueAsString(film2) + ","
+                + "{\"name\":\"Bulk film\",\"description\":\"Bulk description\",\"releaseDate\":\"2001-02-03\","
+                + "\"duration\":-5}" + ","
+                + objectMapper.writeValueAsString(film2) + ","
+                + "{\"name\":\"Bulk film\",\"description\":\"Bulk description\",\"releaseDate\":\"2001-02-03\","
+                + "\"duration\":120,\"mpa\":{\"id\":999}}" + ","
+                + "{\"name\":\"Bulk film\",\"description\":\"Bulk description\",\"releaseDate\":\"2001-02-03\","
+                + "\"duration\":120,\"mpa\":{\"id\":3},\"genres\":[{\"id\":2},{\"id\":1}]}"
+                + "]";
+
+        final String response = mockMvc.perform(post("/films/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(films))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$.created")
+                        .value(2))
+                .andExpect(jsonPath("$.duplicates")
+                        .value(2))
+                .andExpect(jsonPath("$.invalid")
+                        .value(2))
+                .andExpect(jsonPath("$.records[*].outcome")
+                        .value(contains("DUPLICATE", "CREATED", "INVALID", "DUPLICATE", "INVALID", "CREATED")))
+                .andExpect(jsonPath("$.records[0].id")
+                        .value(existing.getId()))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        final long bulkFilmId = objectMapper.readTree(response).at("/records/5/id").asLong();
+
+        mockMvc.perform(get("/films/{filmId}", bulkFilmId))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$.name")
+                        .value("Bulk film"))
+                .andExpect(jsonPath("$.mpa.id")
+                        .value(3))
+                .andExpect(jsonPath("$.genres[*].id")
+                        .value(contains(1, 2)));
+
+        mockMvc.perform(get("/films/popular")
+                        .param("count", "10"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$[*]", hasSize(3)));
+    }
+
+    @Test
+    @SneakyThrows
+    void bulkImportFilmsFromNdjsonTest() {
+        mockMvc.perform(post("/films/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(objectMapper.writeValueAsString(film1) + "\n"
+                                + objectMapper.writeValueAsString(film2) + "\n"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$.created")
+                        .value(2));
+
+        mockMvc.perform(post("/films/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"name\":\"Bulk film\",\"description\":\"Bulk description\",\"releaseDate\":\"2001-02-03\","
+                                + "\"duration\":120}\n{\"name\": broken"))
+                .andExpect(status()
+                        .isBadRequest());
+
+        mockMvc.perform(get("/films"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$[*]", hasSize(2)));
+    }
+
+    @Test
+    @SneakyThrows
+    void bulkImportLikesTest() {
+        final long first = filmService.createFilm(film1).getId();
+        final long second = filmService.createFilm(film2).getId();
+        final long liker = userService.createUser(User
+                .builder()
+                .login("liker")
+                .email("liker@mail.ru")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build()).getId();
+        final long otherLiker = userService.createUser(User
+                .builder()
+                .login("otherLiker")
+                .email("otherLiker@mail.ru")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build()).getId();
+        filmService.addUserLikeByFilmId(first, liker);
+
+        mockMvc.perform(post("/films/likes/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("["
+                                + "{\"filmId\":" + second + ",\"userId\":" + liker + "},"
+                                + "{\"filmId\":" + second + ",\"userId\":" + otherLiker + "},"
+                                + "{\"filmId\":" + second + ",\"userId\":" + liker + "},"
+                                + "{\"filmId\":" + first + ",\"userId\":" + liker + "},"
+                                + "{\"filmId\":" + first + ",\"userId\":9999},"
+                                + "{\"filmId\":9999,\"userId\":" + liker + "}"
+                                + "]"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$.imported")
+                        .value(2))
+                .andExpect(jsonPath("$.duplicates")
+                        .value(2))
+                .andExpect(jsonPath("$.invalid")
+                        .value(2))
+                .andExpect(jsonPath("$.errors", hasSize(2)));
+
+        mockMvc.perform(get("/films/{filmId}", second))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$.likesCount")
+                        .value(2));
+
+        mockMvc.perform(get("/films/popular")
+                        .param("count", "2"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$[*].id")
+                        .value(contains((int) second, (int) first)));
+
+        userService.removeAllUser();
+    }
+
+    @Test
+    @SneakyThrows
+    void getFilmsByIdsTest() {
+        final Film first = filmService.createFilm(film1);
+        final Film second = filmService.createFilm(film2);
+        filmService.addUserLikeByFilmId(second.getId(), userService.createUser(User
+                .builder()
+                .login("liker")
+                .email("liker@mail.ru")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build()).getId());
+
+        mockMvc.perform(get("/films")
+                        .param("ids", second.getId() + ",9999," + first.getId() + "," + second.getId()))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(header()
+                        .string("X-Missing-Ids", "9999"))
+                .andExpect(jsonPath("$[*].id")
+                        .value(contains(second.getId().intValue(), first.getId().intValue())))
+                .andExpect(jsonPath("$[0].likesCount")
+                        .value(1));
+
+        mockMvc.perform(get("/films")
+                        .param("ids", String.valueOf(first.getId())))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(header()
+                        .doesNotExist("X-Missing-Ids"))
+                .andExpect(jsonPath("$[*]", hasSize(1)));
+
+        mockMvc.perform(get("/films")
+                        .param("ids", second.getId() + "," + first.getId())
+                        .param("withLikes", "true"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$[0].userFilmLike", hasSize(1)))
+                .andExpect(jsonPath("$[1].userFilmLike", hasSize(0)));
+
+        mockMvc.perform(get("/films")
+                        .param("ids", "0"))
+                .andExpect(status()
+                        .isBadRequest());
+
+        userService.removeAllUser();
+    }
+
+    @Test
+    @SneakyThrows
+    void getFilmsWithSparseFieldsTest() {
+        mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(film1)))
+                .andExpect(status()
+                        .isCreated());
+
+        final Film created = objectMapper.readValue(mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(film2)))
+                .andExpect(status()
+                        .isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(), Film.class);
+
+        mockMvc.perform(get("/films")
+                        .param("fields", "id,name"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$[*]", hasSize(2)))
+                .andExpect(jsonPath("$[0].id")
+                        .exists())
+                .andExpect(jsonPath("$[0].name")
+                        .value(film1.getName()))
+                .andExpect(jsonPath("$[0].description")
+                        .doesNotExist())
+                .andExpect(jsonPath("$[0].genres")
+                        .doesNotExist());
+
+        mockMvc.perform(get("/films")
+                        .param("fields", "name,genres")
+                        .param("limit", "1"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(header()
+                        .exists("X-Next-Cursor"))
+                .andExpect(jsonPath("$[0].id")
+                        .doesNotExist())
+                .andExpect(jsonPath("$[0].genres")
+                        .isArray());
+
+        mockMvc.perform(get("/films/{filmId}", created.getId())
+                        .param("fields", "duration"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$.duration")
+                        .value(190))
+                .andExpect(jsonPath("$.name")
+                        .doesNotExist());
+
+        mockMvc.perform(get("/films")
+                        .param("fields", "id,unknown"))
+                .andExpect(status()
+                        .isBadRequest());
+
+        mockMvc.perform(get("/films/{filmId}", created.getId())
+                        .param("fields", "unknown"))
+                .andExpect(status()
+                        .isBadRequest());
+
+        mockMvc.perform(get("/films/popular")
+                        .param("fields", "id"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$[*]", hasSize(2)))
+                .andExpect(jsonPath("$[0].name")
+                        .exists())
+                .andExpect(jsonPath("$[0].duration")
+                        .exists());
+    }
+
+
+    @Test
+    @SneakyThrows
+    void exportAllFilmAsNdjsonTest() {
+        mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(film1)))
+                .andExpect(status()
+                        .isCreated());
+
+        mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(film2)))
+                .andExpect(status()
+                        .isCreated());
+
+        final MvcResult mvcResult = mockMvc
+                .perform(get("/films")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request()
+                        .asyncStarted())
+                .andReturn();
+
+        final String[] lines = mockMvc
+                .perform(asyncDispatch(mvcResult))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(content()
+                        .contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+                .split("\n");
+
+        assertEquals(2, lines.length);
+        assertEquals(film1.getName(), objectMapper.readValue(lines[0], Film.class).getName());
+        assertEquals(film2.getName(), objectMapper.readValue(lines[1], Film.class).getName());
+    }
+
+
     @Test
     @SneakyThrows
     void postBadRequestFilmWithIdTest() {
@@ -173,6 +537,42 @@ public class FilmControllerTest {
     }
 
 
+    @Test
+    @SneakyThrows
+    void postFailFilmLongNameOrMissingFields() {
+        final Film longNameFilm = Film
+                .builder()
+                .name("N".repeat(65))
+                .description("Description")
+                .releaseDate(LocalDate.of(1900, 3, 25))
+                .duration(200)
+                .build();
+
+        mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(longNameFilm)))
+                .andExpect(status()
+                        .isBadRequest());
+
+        mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"No description\",\"releaseDate\":\"2001-02-03\",\"duration\":120}"))
+                .andExpect(status()
+                        .isBadRequest());
+
+        mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"No release date\",\"description\":\"Description\",\"duration\":120}"))
+                .andExpect(status()
+                        .isBadRequest());
+
+        mockMvc.perform(get("/films"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$[*]", hasSize(0)));
+    }
+
+
     @Test
     @SneakyThrows
     void postFailFilmReleaseDate() {
@@ -396,6 +796,83 @@ public class FilmControllerTest {
     }
 
 
+    @Test
+    @SneakyThrows
+    void patchFilmTest() {
+        mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(film1)))
+                .andExpect(status()
+                        .isCreated());
+
+        mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(film2)))
+                .andExpect(status()
+                        .isCreated());
+
+        mockMvc.perform(patch("/films/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"description\":\"patched\",\"mpa\":{\"id\":2},"
+                                + "\"genres\":[{\"id\":2},{\"id\":1}],\"userFilmLike\":[1,2]}"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$.name")
+                        .value("nisi eiusmod"))
+                .andExpect(jsonPath("$.description")
+                        .value("patched"))
+                .andExpect(jsonPath("$.duration")
+                        .value(100))
+                .andExpect(jsonPath("$.mpa.id")
+                        .value(2))
+                .andExpect(jsonPath("$.genres[*]", hasSize(2)))
+                .andExpect(jsonPath("$.likesCount")
+                        .value(0))
+                .andExpect(jsonPath("$.userFilmLike")
+                        .doesNotExist());
+
+        mockMvc.perform(patch("/films/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"mpa\":{\"id\":3},\"genres\":[]}"))
+                .andExpect(status()
+                        .isOk());
+
+        mockMvc.perform(get("/films/1"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$.description")
+                        .value("patched"))
+                .andExpect(jsonPath("$.mpa.id")
+                        .value(3))
+                .andExpect(jsonPath("$.genres")
+                        .isEmpty());
+
+        mockMvc.perform(patch("/films/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Film Updated\",\"releaseDate\":\"1989-04-17\",\"duration\":190}"))
+                .andExpect(status()
+                        .isConflict());
+
+        mockMvc.perform(patch("/films/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\" \"}"))
+                .andExpect(status()
+                        .isBadRequest());
+
+        mockMvc.perform(patch("/films/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"mpa\":{\"id\":999}}"))
+                .andExpect(status()
+                        .isNotFound());
+
+        mockMvc.perform(patch("/films/9999")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"description\":\"patched\"}"))
+                .andExpect(status()
+                        .isNotFound());
+    }
+
+
     @Test
     @SneakyThrows
     void addAndDeleteUserLikeOnFilmAndGetPopularListAndRepeatedLike() {
@@ -461,9 +938,31 @@ public class FilmControllerTest {
         mockMvc.perform(get("/films/2"))
                 .andExpect(status()
                         .isOk())
+                .andExpect(jsonPath("$.likesCount")
+                        .value(1))
+                .andExpect(jsonPath("$.userFilmLike")
+                        .doesNotExist());
+
+        mockMvc.perform(get("/films/2")
+                        .param("withLikes", "true"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$.id")
+                        .value(2))
+                .andExpect(jsonPath("$.likesCount")
+                        .value(1))
                 .andExpect(jsonPath("$.userFilmLike[0]")
                         .value("1"));
 
+        mockMvc.perform(get("/films/2/likes")
+                        .param("limit", "1"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(header()
+                        .exists("X-Next-Cursor"))
+                .andExpect(jsonPath("$[0]")
+                        .value(1));
+
         mockMvc.perform(put("/films/2/like/1"))
                 .andExpect(status()
                         .isConflict());
@@ -486,9 +985,19 @@ public class FilmControllerTest {
         mockMvc.perform(get("/films/2"))
                 .andExpect(status()
                         .isOk())
-                .andExpect(jsonPath("$.userFilmLike")
+                .andExpect(jsonPath("$.likesCount")
+                        .value(0));
+
+        mockMvc.perform(get("/films/2/likes"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$")
                         .isEmpty());
 
+        mockMvc.perform(get("/films/9999/likes"))
+                .andExpect(status()
+                        .isNotFound());
+
         mockMvc.perform(delete("/users"));
     }
 
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
@@ -14,6 +15,7 @@ import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.film.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.film.dao.DbFilmStorageImpl;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.time.LocalDate;
@@ -31,6 +33,8 @@ public class FilmGenreDatabaseTest {
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
     private final GenreStorage genreStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final DbFilmStorageImpl dbFilmStorage;
 
 
     @AfterEach
@@ -163,6 +167,7 @@ public class FilmGenreDatabaseTest {
                         .build());
 
         filmStorage.addUserLikeOnFilm(2L, 1L);
+        dbFilmStorage.reconcileLikesCount();
 
         assertThat(
                 new ArrayList<>(filmStorage.getFilmByPopular(10)).get(0))
@@ -177,6 +182,7 @@ public class FilmGenreDatabaseTest {
 
         filmStorage.removeUserLikeOnFilm(2L, 1L);
         filmStorage.addUserLikeOnFilm(1L, 1L);
+        dbFilmStorage.reconcileLikesCount();
 
         assertThat(
                 new ArrayList<>(
@@ -206,7 +212,193 @@ public class FilmGenreDatabaseTest {
                 .hasMessageContaining(
                         "У фильма с id => 2 не существует лайка пользователя с id => 1");
 
+        assertThatThrownBy(
+                () -> filmStorage.addUserLikeOnFilm(1L, 1L))
+                .isInstanceOf(
+                        ConflictException.class)
+                .hasMessageContaining(
+                        "У фильма с id => 1 уже существует лайк пользователя с id => 1");
+
+        assertThatThrownBy(
+                () -> filmStorage.addUserLikeOnFilm(9999L, 1L))
+                .isInstanceOf(
+                        NotFoundException.class)
+                .hasMessageContaining(
+                        "Такой фильм с id => 9999 не существует");
+
+        assertThatThrownBy(
+                () -> filmStorage.addUserLikeOnFilm(1L, 9999L))
+                .isInstanceOf(
+                        NotFoundException.class)
+                .hasMessageContaining(
+                        "Такой пользователь c id => 9999 не существует");
+
+        assertThat(
+                filmStorage.removeUserLikeOnFilm(2L, 1L))
+                .isFalse();
+
+        assertThat(
+                jdbcTemplate.queryForList("SELECT likes_count FROM films ORDER BY id", Integer.class))
+                .containsExactly(1, 0);
+
+        userStorage.removeAllUser();
+    }
+
+    @Test
+    public void testFilmGenresDiff() {
+
+        final Film film = Film
+                .builder()
+                .name("The Shawshank Redemption")
+                .description("Nominated for 7 Oscars")
+                .releaseDate(LocalDate.of(1994, 9, 22))
+                .duration(144)
+                .mpa(Mpa.builder().id(1).build())
+                .build();
+
+        film.getGenres().add(Genre.builder().id(1).build());
+        film.getGenres().add(Genre.builder().id(2).build());
+
+        assertThat(
+                filmStorage.createFilm(film).getGenres())
+                .allSatisfy(genre -> assertThat(genre.getName()).isNotBlank())
+                .extracting(Genre::getId)
+                .containsExactlyInAnyOrder(1, 2);
+
+        film.getGenres().clear();
+        film.getGenres().add(Genre.builder().id(2).build());
+        film.getGenres().add(Genre.builder().id(3).build());
+
+        assertThat(
+                filmStorage.updateFilm(film).getGenres())
+                .allSatisfy(genre -> assertThat(genre.getName()).isNotBlank())
+                .extracting(Genre::getId)
+                .containsExactlyInAnyOrder(2, 3);
+
+        assertThat(
+                jdbcTemplate.queryForList("SELECT genre_id FROM film_genre WHERE film_id = 1 ORDER BY genre_id",
+                        Integer.class))
+                .containsExactly(2, 3);
+
+        film.getGenres().clear();
+
+        filmStorage.updateFilm(film);
+
+        assertThat(
+                filmStorage.getFilmById(1L).getGenres())
+                .isEmpty();
+
+        final Film filmWithUnknownGenre = Film
+                .builder()
+                .name("The Godfather")
+                .description("Won 3 Oscars")
+                .releaseDate(LocalDate.of(1972, 3, 17))
+                .duration(144)
+                .mpa(Mpa.builder().id(1).build())
+                .build();
+
+        filmWithUnknownGenre.getGenres().add(Genre.builder().id(999).build());
+
+        assertThatThrownBy(
+                () -> filmStorage.createFilm(filmWithUnknownGenre))
+                .isInstanceOf(
+                        NotFoundException.class)
+                .hasMessageContaining(
+                        "Жанр по id => 999 не существует");
+
+        assertThat(
+                filmStorage.getAllFilm())
+                .size()
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void testLikesCountAndRecalculate() {
+
+        filmStorage.createFilm(
+                Film
+                        .builder()
+                        .name("The Shawshank Redemption")
+                        .description("Nominated for 7 Oscars")
+                        .releaseDate(LocalDate.of(1994, 9, 22))
+                        .duration(144)
+                        .mpa(Mpa.builder().id(1).build())
+                        .build());
+
+        filmStorage.createFilm(
+                Film
+                        .builder()
+                        .name("The Godfather")
+                        .description("Won 3 Oscars")
+                        .releaseDate(LocalDate.of(1972, 3, 17))
+                        .duration(144)
+                        .mpa(Mpa.builder().id(1).build())
+                        .build());
+
+        userStorage.createUser(
+                User
+                        .builder()
+                        .name("John")
+                        .email("john@beatles.uk")
+                        .login("john")
+                        .birthday(LocalDate.of(1940, 10, 9))
+                        .build());
+
+        userStorage.createUser(
+                User
+                        .builder()
+                        .name("Paul")
+                        .email("paul@beatles.uk")
+                        .login("paul")
+                        .birthday(LocalDate.of(1942, 6, 18))
+                        .build());
+
+        filmStorage.addUserLikeOnFilm(2L, 1L);
+        filmStorage.addUserLikeOnFilm(2L, 2L);
+        filmStorage.addUserLikeOnFilm(1L, 1L);
+        filmStorage.removeUserLikeOnFilm(1L, 2L);
+
+        assertThat(
+                filmStorage.getAllFilmLikesCount())
+                .containsOnly(entry(1L, 1L), entry(2L, 2L));
+
+        dbFilmStorage.reconcileLikesCount();
+
+        assertThat(
+                jdbcTemplate.queryForList("SELECT likes_count FROM films ORDER BY id", Integer.class))
+                .containsExactly(1, 2);
+
+        assertThat(
+                filmStorage.recalculateLikesCount())
+                .isZero();
+
+        jdbcTemplate.update("UPDATE films SET likes_count = 100 WHERE id = 1");
+
+        assertThat(
+                new ArrayList<>(filmStorage.getFilmByPopular(1)).get(0))
+                .hasFieldOrPropertyWithValue(
+                        "name", "The Shawshank Redemption");
+
+        assertThat(
+                filmStorage.recalculateLikesCount())
+                .isEqualTo(1);
+
+        assertThat(
+                new ArrayList<>(filmStorage.getFilmByPopular(1)).get(0))
+                .hasFieldOrPropertyWithValue(
+                        "name", "The Godfather");
+
+        userStorage.removeUserById(2L);
+
+        assertThat(
+                jdbcTemplate.queryForList("SELECT likes_count FROM films ORDER BY id", Integer.class))
+                .containsExactly(1, 1);
+
         userStorage.removeAllUser();
+
+        assertThat(
+                jdbcTemplate.queryForList("SELECT likes_count FROM films ORDER BY id", Integer.class))
+                .containsExactly(0, 0);
     }
 
     @Test
@@ -260,4 +452,54 @@ public class FilmGenreDatabaseTest {
                                         .build()));
 
     }
+
+    @Test
+    public void testFilmsShareDictionaryMpaAndGenres() {
+
+        for (String name : List.of("The Shawshank Redemption", "The Godfather")) {
+            final Film film = Film
+                    .builder()
+                    .name(name)
+                    .description(name + " won Oscars")
+                    .releaseDate(LocalDate.of(1994, 9, 22))
+                    .duration(144)
+                    .mpa(Mpa.builder().id(1).build())
+                    .build();
+
+            film.getGenres().add(Genre.builder().id(2).build());
+
+            filmStorage.createFilm(film);
+        }
+
+        final List<Film> films = new ArrayList<>(filmStorage.getAllFilm());
+
+        assertThat(films.get(0).getMpa())
+                .isSameAs(films.get(1).getMpa());
+        assertThat(films.get(0).getGenres().iterator().next())
+                .isSameAs(films.get(1).getGenres().iterator().next())
+                .isSameAs(genreStorage.getGenreById(2));
+
+        filmStorage.getFilmById(films.get(0).getId());
+
+        assertThat(filmStorage.getFilmById(films.get(0).getId()).getGenres().iterator().next())
+                .isSameAs(genreStorage.getGenreById(2));
+
+        final Genre genre = genreStorage.createGenre(Genre.builder().name("Noir").build());
+
+        genreStorage.addGenreOnFilm(genre.getId(), 1L);
+        genreStorage.updateGenre(genre.toBuilder().name("Neo-noir").build());
+
+        assertThat(filmStorage.getFilmById(1L).getGenres())
+                .extracting(Genre::getName)
+                .contains("Neo-noir");
+
+        filmStorage.removeAllFilm();
+
+        assertThatThrownBy(
+                () -> genreStorage.getGenreById(genre.getId()))
+                .isInstanceOf(
+                        NotFoundException.class);
+        assertThat(genreStorage.getGenreList())
+                .hasSize(6);
+    }
 }
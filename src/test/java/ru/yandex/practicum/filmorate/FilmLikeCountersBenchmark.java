@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.yandex.practicum.filmorate.storage.film.index.FilmLikeCounters;
+import ru.yandex.practicum.filmorate.storage.film.index.FilmPopularityIndex;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilmLikeCountersBenchmark {
+    private static final long HOT_FILM_ID = 1L;
+
+    private FilmLikeCounters filmLikeCounters;
+
+    private FilmPopularityIndex filmPopularityIndex;
+
+
+    public static void main(String[] args) throws RunnerException {
+
+        final int processors = Runtime.getRuntime().availableProcessors();
+
+        for (int threads : new int[]{1, 2, 4, 8}) {
+            if (threads > processors) {
+                System.out.println("Пропуск замера на " + threads + " потоках: доступно процессоров => " + processors);
+                continue;
+            }
+            new Runner(new OptionsBuilder()
+                    .include(FilmLikeCountersBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build())
+                    .run();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        filmLikeCounters = new FilmLikeCounters();
+        filmPopularityIndex = new FilmPopularityIndex();
+
+        filmPopularityIndex.rebuild(Map.of(HOT_FILM_ID, 0L));
+    }
+
+    @Benchmark
+    public void likeStripedCounter() {
+        filmLikeCounters.addLikes(HOT_FILM_ID, 1, () -> 0);
+    }
+
+    @Benchmark
+    public void likePopularityIndex() {
+        filmPopularityIndex.incrementLikes(HOT_FILM_ID);
+    }
+}
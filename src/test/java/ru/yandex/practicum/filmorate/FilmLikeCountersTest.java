@@ -0,0 +1,188 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.index.FilmLikeCounters;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FilmLikeCountersTest {
+    private final FilmLikeCounters filmLikeCounters = new FilmLikeCounters();
+    private final Map<Long, Long> storedLikesCount = new ConcurrentHashMap<>();
+
+
+    @Test
+    public void testConcurrentLikesOnHotFilmAreReconciledAsDelta() throws InterruptedException {
+
+        storedLikesCount.put(1L, 10L);
+
+        final AtomicInteger loads = new AtomicInteger();
+        final ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+        for (int i = 0; i < 8_000; i++) {
+            final long delta = i % 4 == 0 ? -1 : 1;
+
+            executorService.execute(() -> filmLikeCounters.addLikes(1L, delta, () -> {
+                loads.incrementAndGet();
+                return storedLikesCount.get(1L);
+            }));
+        }
+
+        executorService.shutdown();
+
+        assertThat(executorService.awaitTermination(30, TimeUnit.SECONDS))
+                .isTrue();
+
+        assertThat(loads.get())
+                .isBetween(1, 8);
+        assertThat(filmLikeCounters.getLikesCount(1L, 10L))
+                .isEqualTo(4_010L);
+        assertThat(filmLikeCounters.getLikesCount(2L, 7L))
+                .isEqualTo(7L);
+
+        filmLikeCounters.reconcile(this::persist);
+
+        assertThat(storedLikesCount)
+                .containsEntry(1L, 4_010L);
+        assertThat(filmLikeCounters.hasUnpersistedLikes())
+                .isFalse();
+
+        filmLikeCounters.addLikes(1L, 1, () -> 0);
+        filmLikeCounters.addLikes(1L, -1, () -> 0);
+        filmLikeCounters.reconcile(deltas -> {
+            throw new AssertionError("Нет изменений для сохранения");
+        });
+    }
+
+    @Test
+    public void testFailedReconcileIsRetried() {
+
+        storedLikesCount.put(1L, 0L);
+
+        filmLikeCounters.addLikes(1L, 3, () -> 0);
+
+        assertThatThrownBy(() -> filmLikeCounters.reconcile(deltas -> {
+            throw new IllegalStateException("База данных недоступна");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(filmLikeCounters.hasUnpersistedLikes())
+                .isTrue();
+
+        filmLikeCounters.addLikes(1L, 2, () -> 0);
+        filmLikeCounters.reconcile(this::persist);
+
+        assertThat(storedLikesCount)
+                .containsEntry(1L, 5L);
+    }
+
+    @Test
+    public void testUnindexedFilmsAreDrainedOnce() {
+
+        filmLikeCounters.addLikes(1L, 1, () -> 4);
+        filmLikeCounters.addLikes(2L, 1, () -> 0);
+        filmLikeCounters.addLikes(1L, 1, () -> 4);
+
+        final Map<Long, Long> indexed = new HashMap<>();
+
+        filmLikeCounters.drainUnindexed(indexed::put);
+
+        assertThat(indexed)
+                .containsExactlyInAnyOrderEntriesOf(Map.of(1L, 6L, 2L, 1L));
+
+        indexed.clear();
+        filmLikeCounters.removeFilm(2L);
+        filmLikeCounters.drainUnindexed(indexed::put);
+
+        assertThat(indexed)
+                .isEmpty();
+        assertThat(filmLikeCounters.getLikesCount(2L, 0L))
+                .isZero();
+    }
+
+    @Test
+    public void testLikesAddedDuringResetAreNotLost() throws InterruptedException {
+
+        storedLikesCount.put(1L, 0L);
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+        for (int i = 0; i < 8_000; i++) {
+            executorService.execute(() -> filmLikeCounters.addLikes(1L, 1, () -> storedLikesCount.get(1L)));
+
+            if (i % 500 == 0) {
+                filmLikeCounters.reset(() -> filmLikeCounters.reconcile(this::persist), this::stored);
+            }
+        }
+
+        executorService.shutdown();
+
+        assertThat(executorService.awaitTermination(30, TimeUnit.SECONDS))
+                .isTrue();
+
+        filmLikeCounters.reconcile(this::persist);
+
+        assertThat(storedLikesCount)
+                .containsEntry(1L, 8_000L);
+        assertThat(filmLikeCounters.getLikesCount(1L, 0L))
+                .isEqualTo(8_000L);
+    }
+
+    @Test
+    public void testResetRebasesCountersOnRepairedStoredCount() {
+
+        storedLikesCount.put(1L, 10L);
+
+        filmLikeCounters.addLikes(1L, 5, () -> storedLikesCount.get(1L));
+        filmLikeCounters.reset(() -> storedLikesCount.put(1L, 3L), this::stored);
+
+        assertThat(filmLikeCounters.getLikesCount(1L, 0L))
+                .isEqualTo(8L);
+
+        filmLikeCounters.reconcile(this::persist);
+
+        assertThat(storedLikesCount)
+                .containsEntry(1L, 8L);
+    }
+
+    @Test
+    public void testSeedLoadedBeforeResetIsReloaded() {
+
+        storedLikesCount.put(1L, 10L);
+
+        filmLikeCounters.addLikes(Map.of(1L, 1L), filmIds -> {
+
+            final Map<Long, Long> likesCountByFilmId = stored(filmIds);
+
+            if (likesCountByFilmId.get(1L) == 10L) {
+                filmLikeCounters.reset(() -> storedLikesCount.put(1L, 3L), this::stored);
+            }
+
+            return likesCountByFilmId;
+        });
+
+        assertThat(filmLikeCounters.getLikesCount(1L, 0L))
+                .isEqualTo(4L);
+    }
+
+    private Map<Long, Long> stored(Collection<Long> filmIds) {
+
+        final Map<Long, Long> likesCountByFilmId = new HashMap<>();
+
+        filmIds.forEach(filmId -> likesCountByFilmId.put(filmId, storedLikesCount.get(filmId)));
+
+        return likesCountByFilmId;
+    }
+
+    private void persist(Map<Long, Long> deltas) {
+        deltas.forEach((filmId, delta) -> storedLikesCount.merge(filmId, delta, Long::sum));
+    }
+}
@@ -0,0 +1,197 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.index.FilmPopularityIndex;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FilmPopularityIndexTest {
+    private final FilmPopularityIndex filmPopularityIndex = new FilmPopularityIndex();
+
+
+    @Test
+    public void testTopFilmIdsOrderedByLikesThenId() {
+
+        filmPopularityIndex.rebuild(Map.of(1L, 0L, 2L, 5L, 3L, 5L, 4L, 1L));
+
+        assertThat(filmPopularityIndex.isStale())
+                .isFalse();
+
+        assertThat(filmPopularityIndex.getTopFilmIds(3))
+                .containsExactly(2L, 3L, 4L);
+
+        filmPopularityIndex.incrementLikes(3L);
+        filmPopularityIndex.decrementLikes(2L);
+        filmPopularityIndex.addFilm(5L);
+        filmPopularityIndex.removeFilm(4L);
+
+        assertThat(filmPopularityIndex.getTopFilmIds(10))
+                .containsExactly(3L, 2L, 1L, 5L);
+
+        filmPopularityIndex.putFilm(1L, 10L);
+
+        assertThat(filmPopularityIndex.getTopFilmIds(1))
+                .containsExactly(1L);
+
+        filmPopularityIndex.clear();
+
+        assertThat(filmPopularityIndex.getTopFilmIds(10))
+                .isEmpty();
+    }
+
+    @Test
+    public void testConcurrentLikes() throws InterruptedException {
+
+        filmPopularityIndex.rebuild(Map.of(1L, 0L, 2L, 0L, 3L, 0L));
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+        for (int i = 0; i < 8_000; i++) {
+            final long filmId = i % 8 < 4 ? 1L : i % 8 < 7 ? 2L : 3L;
+
+            executorService.execute(() -> filmPopularityIndex.incrementLikes(filmId));
+            executorService.execute(() -> filmPopularityIndex.getTopFilmIds(2));
+        }
+
+        executorService.shutdown();
+
+        assertThat(executorService.awaitTermination(30, TimeUnit.SECONDS))
+                .isTrue();
+
+        assertThat(filmPopularityIndex.getTopFilmIds(3))
+                .containsExactly(1L, 2L, 3L);
+
+        for (int i = 0; i <= 1_000; i++) {
+            filmPopularityIndex.decrementLikes(1L);
+        }
+
+        assertThat(filmPopularityIndex.getTopFilmIds(3))
+                .containsExactly(2L, 1L, 3L);
+    }
+
+    @Test
+    public void testTopFilmIdsMatchBruteForceSortOnRandomOperations() {
+
+        for (long seed = 1; seed <= 20; seed++) {
+            final Random random = new Random(seed);
+            final FilmPopularityIndex index = new FilmPopularityIndex();
+            final Map<Long, Long> likesByFilmId = new HashMap<>();
+
+            for (int step = 0; step < 2_000; step++) {
+                final long filmId = 1 + random.nextInt(50);
+
+                switch (random.nextInt(5)) {
+                    case 0:
+                        index.addFilm(filmId);
+                        likesByFilmId.putIfAbsent(filmId, 0L);
+                        break;
+                    case 1:
+                        final long likesCount = random.nextInt(20);
+                        index.putFilm(filmId, likesCount);
+                        likesByFilmId.put(filmId, likesCount);
+                        break;
+                    case 2:
+                        index.removeFilm(filmId);
+                        likesByFilmId.remove(filmId);
+                        break;
+                    case 3:
+                        index.incrementLikes(filmId);
+                        likesByFilmId.merge(filmId, 1L, Long::sum);
+                        break;
+                    default:
+                        index.decrementLikes(filmId);
+                        likesByFilmId.put(filmId, Math.max(0, likesByFilmId.getOrDefault(filmId, 0L) - 1));
+                }
+
+                final int count = 1 + random.nextInt(60);
+
+                assertThat(index.getTopFilmIds(count))
+                        .as("seed %d, step %d", seed, step)
+                        .isEqualTo(bruteForceTop(likesByFilmId, count));
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentUpdatesMatchBruteForceSort() throws Exception {
+
+        final Random random = new Random(42);
+        final Map<Long, Long> likesByFilmId = new HashMap<>();
+
+        for (long filmId = 1; filmId <= 200; filmId++) {
+            likesByFilmId.put(filmId, 1_000L);
+        }
+
+        filmPopularityIndex.rebuild(likesByFilmId);
+
+        final List<List<long[]>> changesByThread = new ArrayList<>();
+
+        for (int thread = 0; thread < 8; thread++) {
+            final List<long[]> changes = new ArrayList<>();
+
+            for (int i = 0; i < 5_000; i++) {
+                final long filmId = 1 + random.nextInt(200);
+                final long delta = random.nextInt(3) == 0 ? -1 : 1;
+
+                changes.add(new long[]{filmId, delta});
+                likesByFilmId.merge(filmId, delta, Long::sum);
+            }
+            changesByThread.add(changes);
+        }
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(9);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+
+        for (List<long[]> changes : changesByThread) {
+            futures.add(executorService.submit(() -> {
+                start.await();
+                for (long[] change : changes) {
+                    if (change[1] > 0) {
+                        filmPopularityIndex.incrementLikes(change[0]);
+                    } else {
+                        filmPopularityIndex.decrementLikes(change[0]);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        futures.add(executorService.submit(() -> {
+            start.await();
+            for (int i = 0; i < 2_000; i++) {
+                assertThat(filmPopularityIndex.getTopFilmIds(50))
+                        .hasSize(50)
+                        .doesNotHaveDuplicates();
+            }
+            return null;
+        }));
+
+        start.countDown();
+
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+
+        executorService.shutdown();
+
+        assertThat(filmPopularityIndex.getTopFilmIds(200))
+                .isEqualTo(bruteForceTop(likesByFilmId, 200));
+    }
+
+    private static List<Long> bruteForceTop(Map<Long, Long> likesByFilmId, int count) {
+
+        return likesByFilmId
+                .entrySet()
+                .stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(count)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.storage.InMemoryFilmStorageImpl;
+import ru.yandex.practicum.filmorate.storage.user.storage.InMemoryUserStorageImpl;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-XX:+AlwaysPreTouch", "-XX:+UseTransparentHugePages"})
+public class InMemoryFilmStorageBenchmark {
+    private static final int USER_COUNT = 1000;
+    private static final int HOT_FILM_COUNT = 64;
+
+    @Param({"1000", "100000", "1000000"})
+    private int filmCount;
+
+    private InMemoryFilmStorageImpl filmStorage;
+
+    private long[] hotFilmIds;
+
+    private long userId;
+
+    private int nextFilm;
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InMemoryFilmStorageBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        final InMemoryUserStorageImpl userStorage = new InMemoryUserStorageImpl();
+
+        for (int i = 1; i <= USER_COUNT; i++) {
+            userStorage.createUser(
+                    User
+                            .builder()
+                            .login("user" + i)
+                            .email("user" + i + "@mail.ru")
+                            .birthday(LocalDate.of(1990, 1, 1))
+                            .build());
+        }
+
+        filmStorage = new InMemoryFilmStorageImpl(userStorage);
+
+        for (int i = 1; i <= filmCount; i++) {
+            filmStorage.createFilm(
+                    Film
+                            .builder()
+                            .name("Film " + i)
+                            .description("Description " + i)
+                            .releaseDate(LocalDate.of(2000, 1, 1).plusDays(i % 10_000))
+                            .duration(90 + i % 60)
+                            .build());
+        }
+
+        hotFilmIds = new Random(42)
+                .longs(Byte.MAX_VALUE + 1, filmCount + 1)
+                .distinct()
+                .limit(HOT_FILM_COUNT)
+                .toArray();
+    }
+
+    @Benchmark
+    public Film getFilmById() {
+        return filmStorage.getFilmById(nextFilmId());
+    }
+
+    @Benchmark
+    public boolean likeAndUnlike() {
+
+        final long filmId = nextFilmId();
+        final long likedBy = userId++ % USER_COUNT + 1;
+
+        filmStorage.addUserLikeOnFilm(filmId, likedBy);
+
+        return filmStorage.removeUserLikeOnFilm(filmId, likedBy);
+    }
+
+    private long nextFilmId() {
+        return hotFilmIds[nextFilm++ & (HOT_FILM_COUNT - 1)];
+    }
+}
@@ -0,0 +1,200 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.ConflictException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.storage.InMemoryFilmStorageImpl;
+import ru.yandex.practicum.filmorate.storage.user.storage.InMemoryUserStorageImpl;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class InMemoryFilmStorageTest {
+    private final InMemoryUserStorageImpl userStorage = new InMemoryUserStorageImpl();
+    private final InMemoryFilmStorageImpl filmStorage = new InMemoryFilmStorageImpl(userStorage);
+
+
+    @BeforeEach
+    public void setUp() {
+
+        for (int i = 1; i <= 3; i++) {
+            filmStorage.createFilm(makeFilm("Film " + i));
+        }
+        for (int i = 1; i <= 30; i++) {
+            userStorage.createUser(User
+                    .builder()
+                    .login("user" + i)
+                    .email("user" + i + "@mail.ru")
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build());
+        }
+    }
+
+    @Test
+    public void testIndexesFollowUpdateAndRemove() {
+
+        assertThat(filmStorage.getFilmById(2L).getName())
+                .isEqualTo("Film 2");
+
+        assertThatExceptionOfType(ConflictException.class)
+                .isThrownBy(() -> filmStorage.checkFilmByNameReleaseDateDuration(makeFilm("Film 2")));
+
+        final Film renamed = makeFilm("Renamed");
+        renamed.setId(2L);
+
+        filmStorage.addUserLikeOnFilm(2L, 1L);
+        filmStorage.updateFilm(renamed);
+
+        assertThat(filmStorage.getFilmById(2L).getLikesCount())
+                .isEqualTo(1);
+        assertThat(filmStorage.getFilmLikePage(2L, 0, 10))
+                .containsExactly(1L);
+        assertThatNoException()
+                .isThrownBy(() -> filmStorage.checkFilmByNameReleaseDateDuration(makeFilm("Film 2")));
+        assertThatNoException()
+                .isThrownBy(() -> filmStorage.checkFilmByNameReleaseDateDuration(renamed));
+
+        filmStorage.removeFilmById(2L);
+
+        assertThatExceptionOfType(NotFoundException.class)
+                .isThrownBy(() -> filmStorage.getFilmById(2L));
+        assertThat(filmStorage.getAllFilm())
+                .extracting(Film::getId)
+                .containsExactly(1L, 3L);
+        assertThat(filmStorage.getFilmByPopular(10))
+                .extracting(Film::getId)
+                .containsExactly(1L, 3L);
+    }
+
+    @Test
+    public void testPopularFollowsLikes() {
+
+        filmStorage.addUserLikeOnFilm(3L, 1L);
+        filmStorage.addUserLikeOnFilm(3L, 2L);
+        filmStorage.addUserLikeOnFilm(2L, 1L);
+
+        assertThatExceptionOfType(ConflictException.class)
+                .isThrownBy(() -> filmStorage.addUserLikeOnFilm(2L, 1L));
+        assertThatExceptionOfType(NotFoundException.class)
+                .isThrownBy(() -> filmStorage.addUserLikeOnFilm(2L, 9999L));
+        assertThatExceptionOfType(NotFoundException.class)
+                .isThrownBy(() -> filmStorage.addUserLikeOnFilm(9999L, 1L));
+
+        assertThat(filmStorage.getFilmByPopular(2))
+                .extracting(Film::getId)
+                .containsExactly(3L, 2L);
+
+        assertThat(filmStorage.removeUserLikeOnFilm(3L, 1L))
+                .isTrue();
+        assertThat(filmStorage.removeUserLikeOnFilm(3L, 1L))
+                .isFalse();
+        assertThat(filmStorage.removeUserLikeOnFilm(3L, 2L))
+                .isTrue();
+
+        assertThat(filmStorage.getFilmByPopular(3))
+                .extracting(Film::getId)
+                .containsExactly(2L, 1L, 3L);
+    }
+
+    @Test
+    public void testFilmLikesArePagedInUserIdOrder() {
+
+        for (long userId = 30; userId >= 1; userId -= 3) {
+            filmStorage.addUserLikeOnFilm(1L, userId);
+        }
+
+        final List<Long> pagedUserIds = new ArrayList<>();
+        List<Long> page = filmStorage.getFilmLikePage(1L, 0, 4);
+
+        while (!page.isEmpty()) {
+            assertThat(page)
+                    .hasSizeLessThanOrEqualTo(4)
+                    .isSorted();
+
+            pagedUserIds.addAll(page);
+            page = filmStorage.getFilmLikePage(1L, page.get(page.size() - 1), 4);
+        }
+
+        assertThat(pagedUserIds)
+                .containsExactly(3L, 6L, 9L, 12L, 15L, 18L, 21L, 24L, 27L, 30L);
+        assertThat(filmStorage.getFilmLikePage(1L, 10L, 2))
+                .containsExactly(12L, 15L);
+        assertThat(filmStorage.getFilmLikePage(2L, 0, 10))
+                .isEmpty();
+    }
+
+    @Test
+    public void testRecalculateLikesCountRepairsDriftedCounts() {
+
+        filmStorage.addUserLikeOnFilm(1L, 1L);
+        filmStorage.addUserLikeOnFilm(1L, 2L);
+
+        assertThat(filmStorage.recalculateLikesCount())
+                .isZero();
+
+        filmStorage.getFilmById(1L).setLikesCount(100);
+        filmStorage.getFilmById(2L).setLikesCount(5);
+
+        assertThat(filmStorage.recalculateLikesCount())
+                .isEqualTo(2);
+        assertThat(filmStorage.getAllFilmLikesCount())
+                .containsOnly(entry(1L, 2L), entry(2L, 0L), entry(3L, 0L));
+        assertThat(filmStorage.getFilmByPopular(3))
+                .extracting(Film::getId)
+                .containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    public void testPopularMatchesBruteForceSortOnRandomLikes() {
+
+        for (int i = 4; i <= 40; i++) {
+            filmStorage.createFilm(makeFilm("Film " + i));
+        }
+
+        final Random random = new Random(7);
+
+        for (int step = 0; step < 3_000; step++) {
+            final long filmId = 1 + random.nextInt(40);
+            final long userId = 1 + random.nextInt(30);
+
+            if (random.nextBoolean()) {
+                filmStorage.removeUserLikeOnFilm(filmId, userId);
+            } else if (!filmStorage.getFilmLikes(List.of(filmId)).get(filmId).contains(userId)) {
+                filmStorage.addUserLikeOnFilm(filmId, userId);
+            }
+
+            final int count = 1 + random.nextInt(40);
+
+            assertThat(filmStorage.getFilmByPopular(count))
+                    .as("step %d", step)
+                    .extracting(Film::getId)
+                    .containsExactlyElementsOf(filmStorage.getAllFilm()
+                            .stream()
+                            .sorted(Comparator.comparing(Film::getLikesCount).reversed()
+                                    .thenComparing(Film::getId))
+                            .limit(count)
+                            .map(Film::getId)
+                            .collect(Collectors.toList()));
+        }
+    }
+
+    private static Film makeFilm(String name) {
+
+        return Film
+                .builder()
+                .name(name)
+                .description("Description of " + name)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .build();
+    }
+}
@@ -0,0 +1,216 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.ConflictException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.storage.InMemoryFilmStorageImpl;
+import ru.yandex.practicum.filmorate.storage.user.storage.InMemoryUserStorageImpl;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.model.Status.FRIENDSHIP;
+
+public class InMemoryStorageStressTest {
+    private static final int THREADS = 16;
+    private final InMemoryUserStorageImpl userStorage = new InMemoryUserStorageImpl();
+    private final InMemoryFilmStorageImpl filmStorage = new InMemoryFilmStorageImpl(userStorage);
+
+
+    @Test
+    public void testConcurrentCreateUserClaimsLoginAndEmailOnce() throws Exception {
+
+        final AtomicInteger conflicts = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < 500; i++) {
+                try {
+                    userStorage.createUser(makeUser("user" + i));
+                } catch (ConflictException e) {
+                    conflicts.incrementAndGet();
+                }
+            }
+        });
+
+        final Collection<User> users = userStorage.getAllUser();
+
+        assertThat(users)
+                .hasSize(500);
+        assertThat(conflicts.get())
+                .isEqualTo(500 * (THREADS - 1));
+        assertThat(users)
+                .extracting(User::getLogin)
+                .doesNotHaveDuplicates();
+
+        for (User user : users) {
+            assertThat(userStorage.getUserById(user.getId()))
+                    .isSameAs(user);
+        }
+    }
+
+    @Test
+    public void testConcurrentCreateFilmAllocatesUniqueIds() throws Exception {
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < 1_000; i++) {
+                filmStorage.createFilm(makeFilm("Film " + thread + "-" + i));
+            }
+        });
+
+        assertThat(filmStorage.getAllFilm())
+                .extracting(Film::getId)
+                .containsExactlyElementsOf(LongStream
+                        .rangeClosed(1, THREADS * 1_000L)
+                        .boxed()
+                        .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testConcurrentLikesAndUpdatesAreLinearizable() throws Exception {
+
+        for (int i = 1; i <= 20; i++) {
+            filmStorage.createFilm(makeFilm("Film " + i));
+        }
+        for (int i = 1; i <= 100; i++) {
+            userStorage.createUser(makeUser("user" + i));
+        }
+
+        final ConcurrentMap<Long, AtomicInteger> acceptedLikes = new ConcurrentHashMap<>();
+
+        runConcurrently(thread -> {
+            final Random random = new Random(thread);
+
+            for (int i = 0; i < 2_000; i++) {
+                final long filmId = 1 + random.nextInt(20);
+                final long userId = 1 + random.nextInt(100);
+
+                if (i % 50 == 0) {
+                    final Film renamed = makeFilm("Film " + filmId);
+                    renamed.setId(filmId);
+                    renamed.setRate(thread);
+                    filmStorage.updateFilm(renamed);
+                }
+
+                try {
+                    filmStorage.addUserLikeOnFilm(filmId, userId);
+                    acceptedLikes.computeIfAbsent(filmId, id -> new AtomicInteger()).incrementAndGet();
+                } catch (ConflictException e) {
+                    if (random.nextBoolean() && filmStorage.removeUserLikeOnFilm(filmId, userId)) {
+                        acceptedLikes.get(filmId).decrementAndGet();
+                    }
+                }
+            }
+        });
+
+        final Map<Long, Long> expectedLikes = new HashMap<>();
+
+        for (Film film : filmStorage.getAllFilm()) {
+            final AtomicInteger accepted = acceptedLikes.get(film.getId());
+
+            assertThat(film.getLikesCount())
+                    .as("film %d", film.getId())
+                    .isEqualTo(accepted == null ? 0 : accepted.get());
+            assertThat(filmStorage.getFilmLikes(List.of(film.getId())).get(film.getId()))
+                    .hasSize((int) film.getLikesCount());
+
+            expectedLikes.put(film.getId(), film.getLikesCount());
+        }
+
+        assertThat(filmStorage.getAllFilmLikesCount())
+                .isEqualTo(expectedLikes);
+        assertThat(filmStorage.getFilmByPopular(20))
+                .extracting(Film::getId)
+                .containsExactlyElementsOf(expectedLikes
+                        .entrySet()
+                        .stream()
+                        .sorted(Map.Entry.<Long, Long>comparingByValue().reversed()
+                                .thenComparing(Map.Entry.comparingByKey()))
+                        .map(Map.Entry::getKey)
+                        .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testConcurrentMutualFriendship() throws Exception {
+
+        for (int i = 1; i <= 40; i++) {
+            userStorage.createUser(makeUser("user" + i));
+        }
+
+        runConcurrently(thread -> {
+            for (long userId = 1; userId <= 40; userId += 2) {
+                if (thread % 2 == 0) {
+                    userStorage.addFriendship(userId, userId + 1);
+                } else {
+                    userStorage.addFriendship(userId + 1, userId);
+                }
+            }
+        }, 2);
+
+        for (long userId = 1; userId <= 40; userId += 2) {
+            assertThat(userStorage.getUserById(userId).getFriendsIdsStatus())
+                    .containsExactly(Map.entry(userId + 1, FRIENDSHIP));
+            assertThat(userStorage.getUserById(userId + 1).getFriendsIdsStatus())
+                    .containsExactly(Map.entry(userId, FRIENDSHIP));
+        }
+    }
+
+    private void runConcurrently(ThreadTask task) throws Exception {
+        runConcurrently(task, THREADS);
+    }
+
+    private void runConcurrently(ThreadTask task, int threads) throws Exception {
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        final CyclicBarrier start = new CyclicBarrier(threads);
+        final List<Future<?>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < threads; thread++) {
+            final int threadNumber = thread;
+
+            futures.add(executorService.submit(() -> {
+                start.await();
+                task.run(threadNumber);
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static User makeUser(String login) {
+
+        return User
+                .builder()
+                .login(login)
+                .email(login + "@mail.ru")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+
+    private static Film makeFilm(String name) {
+
+        return Film
+                .builder()
+                .name(name)
+                .description("Description of " + name)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .build();
+    }
+
+    private interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+}
@@ -0,0 +1,259 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+import ru.yandex.practicum.filmorate.model.*;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+public class PrimitiveCollectionsTest {
+    private static final int ELEMENTS = 50_000;
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+
+    @Test
+    public void testLongHashSetMatchesHashSetOnRandomOperations() {
+
+        final Random random = new Random(11);
+        final LongHashSet actual = new LongHashSet();
+        final Set<Long> expected = new HashSet<>();
+
+        for (int step = 0; step < 20_000; step++) {
+            final long value = random.nextInt(2_000) - 100;
+
+            if (random.nextInt(3) == 0) {
+                assertThat(actual.remove(value))
+                        .as("step %d", step)
+                        .isEqualTo(expected.remove(value));
+            } else {
+                assertThat(actual.add(value))
+                        .as("step %d", step)
+                        .isEqualTo(expected.add(value));
+            }
+
+            assertThat(actual.size())
+                    .isEqualTo(expected.size());
+        }
+
+        assertThat(actual)
+                .containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(actual)
+                .isEqualTo(expected);
+        assertThat(actual.hashCode())
+                .isEqualTo(expected.hashCode());
+    }
+
+    @Test
+    public void testLongHashSetBulkRemovalMatchesHashSet() {
+
+        for (long seed = 1; seed <= 20; seed++) {
+            final Random random = new Random(seed);
+            final LongHashSet actual = new LongHashSet();
+            final Set<Long> expected = new HashSet<>();
+
+            for (int i = 0; i < 500; i++) {
+                final long value = random.nextInt(1_000) - 10;
+
+                actual.add(value);
+                expected.add(value);
+            }
+
+            final long divisor = 2 + random.nextInt(5);
+            final Set<Long> retained = new HashSet<>();
+            final Set<Long> removed = new HashSet<>();
+
+            for (int i = 0; i < 300; i++) {
+                retained.add((long) random.nextInt(1_000) - 10);
+                removed.add((long) random.nextInt(1_000) - 10);
+            }
+
+            assertThat(actual.removeIf(value -> value % divisor == 0))
+                    .isEqualTo(expected.removeIf(value -> value % divisor == 0));
+            assertThat(actual)
+                    .as("removeIf, seed %d", seed)
+                    .isEqualTo(expected);
+
+            assertThat(actual.retainAll(retained))
+                    .isEqualTo(expected.retainAll(retained));
+            assertThat(actual)
+                    .as("retainAll, seed %d", seed)
+                    .isEqualTo(expected);
+
+            assertThat(actual.removeAll(removed))
+                    .isEqualTo(expected.removeAll(removed));
+            assertThat(actual)
+                    .as("removeAll, seed %d", seed)
+                    .isEqualTo(expected)
+                    .hasSize(expected.size());
+
+            for (long value : expected) {
+                assertThat(actual.contains(value))
+                        .isTrue();
+            }
+        }
+
+        final Iterator<Long> iterator = new LongHashSet(List.of(1L)).iterator();
+
+        assertThatThrownBy(iterator::remove)
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void testLongSortedSetMatchesTreeSetOnRandomOperations() {
+
+        final Random random = new Random(19);
+        final LongSortedSet actual = new LongSortedSet();
+        final TreeSet<Long> expected = new TreeSet<>();
+
+        for (int step = 0; step < 10_000; step++) {
+            final long value = random.nextInt(1_000) - 10;
+
+            if (random.nextInt(3) == 0) {
+                assertThat(actual.remove(value))
+                        .as("step %d", step)
+                        .isEqualTo(expected.remove(value));
+            } else {
+                assertThat(actual.add(value))
+                        .as("step %d", step)
+                        .isEqualTo(expected.add(value));
+            }
+
+            final long after = random.nextInt(1_000) - 10;
+            final int limit = random.nextInt(20);
+
+            assertThat(actual.tail(after, limit))
+                    .as("step %d", step)
+                    .containsExactly(expected
+                            .tailSet(after, false)
+                            .stream()
+                            .limit(limit)
+                            .mapToLong(Long::longValue)
+                            .toArray());
+        }
+
+        assertThat(actual)
+                .containsExactlyElementsOf(expected);
+        assertThat(actual.removeIf(value -> value % 3 == 0))
+                .isEqualTo(expected.removeIf(value -> value % 3 == 0));
+        assertThat(actual)
+                .containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void testFriendStatusMapMatchesTreeMapOnRandomOperations() {
+
+        final Random random = new Random(13);
+        final FriendStatusMap actual = new FriendStatusMap();
+        final TreeMap<Long, Status> expected = new TreeMap<>();
+
+        for (int step = 0; step < 10_000; step++) {
+            final long friendId = 1 + random.nextInt(500);
+
+            if (random.nextInt(3) == 0) {
+                assertThat(actual.remove(friendId))
+                        .as("step %d", step)
+                        .isEqualTo(expected.remove(friendId));
+            } else {
+                final Status status = Status.values()[random.nextInt(Status.values().length)];
+
+                assertThat(actual.put(friendId, status))
+                        .as("step %d", step)
+                        .isEqualTo(expected.put(friendId, status));
+            }
+        }
+
+        assertThat(actual)
+                .containsExactlyEntriesOf(expected);
+        assertThat(actual.tailMap(250L, false))
+                .containsExactlyEntriesOf(expected.tailMap(250L, false));
+        assertThat(new FriendStatusMap(actual))
+                .isEqualTo(expected);
+    }
+
+    @Test
+    public void testJsonStaysCompatible() throws Exception {
+
+        final Film film = Film
+                .builder()
+                .id(1L)
+                .name("Film")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .likesCount(1)
+                .build();
+
+        final User user = User
+                .builder()
+                .id(1L)
+                .login("login")
+                .email("login@mail.ru")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+        user.getFriendsIdsStatus().put(3L, Status.SUBSCRIPTION);
+        user.getFriendsIdsStatus().put(2L, Status.FRIENDSHIP);
+
+        assertThat(objectMapper.readTree(objectMapper.writeValueAsString(film)).has("userFilmLike"))
+                .isFalse();
+        final ObjectNode filmWithLikes = (ObjectNode) objectMapper.readTree(objectMapper.writeValueAsString(film));
+        filmWithLikes.set("userFilmLike", objectMapper.readTree("[3]"));
+
+        assertThat(objectMapper.readTree(objectMapper.writeValueAsString(
+                new FilmWithLikes(film, new LongHashSet(List.of(3L))))))
+                .isEqualTo(filmWithLikes);
+        assertThat(objectMapper.readTree(objectMapper.writeValueAsString(user)).get("friendsIdsStatus"))
+                .isEqualTo(objectMapper.readTree("{\"2\":\"FRIENDSHIP\",\"3\":\"SUBSCRIPTION\"}"));
+        assertThat(objectMapper.readValue(objectMapper.writeValueAsString(user), User.class))
+                .isEqualTo(user);
+    }
+
+    @Test
+    @Tag("footprint")
+    public void testPrimitiveCollectionsUseLessHeap() {
+
+        final Random random = new Random(17);
+        final Set<Long> boxedLikes = new HashSet<>();
+        final LongHashSet primitiveLikes = new LongHashSet();
+        final TreeMap<Long, Status> boxedFriends = new TreeMap<>();
+        final FriendStatusMap primitiveFriends = new FriendStatusMap();
+
+        while (boxedLikes.size() < ELEMENTS) {
+            final long userId = 1_000 + random.nextInt(Integer.MAX_VALUE);
+
+            boxedLikes.add(userId);
+            primitiveLikes.add(userId);
+            boxedFriends.put(userId, Status.FRIENDSHIP);
+            primitiveFriends.put(userId, Status.FRIENDSHIP);
+        }
+
+        final double boxedBytesPerLike = bytesPerElement(boxedLikes);
+        final double primitiveBytesPerLike = bytesPerElement(primitiveLikes);
+        final double boxedBytesPerFriend = bytesPerElement(boxedFriends);
+        final double primitiveBytesPerFriend = bytesPerElement(primitiveFriends);
+
+        log.info("Байт на лайк: HashSet<Long> => {}, LongHashSet => {}", boxedBytesPerLike, primitiveBytesPerLike);
+        log.info("Байт на друга: TreeMap<Long, Status> => {}, FriendStatusMap => {}",
+                boxedBytesPerFriend, primitiveBytesPerFriend);
+
+        assertThat(primitiveBytesPerLike)
+                .isLessThan(boxedBytesPerLike / 2);
+        assertThat(primitiveBytesPerFriend)
+                .isLessThan(boxedBytesPerFriend / 3);
+    }
+
+    private static double bytesPerElement(Object collection) {
+
+        final int size = collection instanceof Map ? ((Map<?, ?>) collection).size() : ((Collection<?>) collection).size();
+
+        return (double) GraphLayout.parseInstance(collection).totalSize() / size;
+    }
+}
@@ -0,0 +1,534 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.EdgeImportResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmImportResult;
+import ru.yandex.practicum.filmorate.model.FilmLikeEdge;
+import ru.yandex.practicum.filmorate.model.FriendshipEdge;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.film.dao.DbFilmStorageImpl;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.model.Status.*;
+
+@SpringBootTest(properties = "filmorate.likes.counters.reconcile-interval-ms=3600000")
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class QueryCountTest {
+    private static final SqlStatementRecorder SQL_STATEMENT_RECORDER = new SqlStatementRecorder();
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final GenreStorage genreStorage;
+    private final MeterRegistry meterRegistry;
+    private final FilmService filmService;
+    private final UserService userService;
+    private final DbFilmStorageImpl dbFilmStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+
+    @BeforeEach
+    public void setUp() {
+
+        for (int i = 1; i <= 3; i++) {
+            userStorage.createUser(
+                    User
+                            .builder()
+                            .name("User " + i)
+                            .email("user" + i + "@mail.ru")
+                            .login("user" + i)
+                            .birthday(LocalDate.of(1980, 1, i))
+                            .build());
+        }
+
+        for (int i = 1; i <= 5; i++) {
+            final Film film = Film
+                    .builder()
+                    .name("Film " + i)
+                    .description("Description " + i)
+                    .releaseDate(LocalDate.of(2000, 1, i))
+                    .duration(100 + i)
+                    .mpa(Mpa.builder().id(i).build())
+                    .build();
+
+            film.getGenres().add(Genre.builder().id(1).build());
+            film.getGenres().add(Genre.builder().id(i).build());
+
+            filmStorage.createFilm(film);
+        }
+
+        filmStorage.addUserLikeOnFilm(1L, 1L);
+        filmStorage.addUserLikeOnFilm(1L, 2L);
+        filmStorage.addUserLikeOnFilm(2L, 3L);
+
+        userStorage.addFriend(1L, 2L, FRIENDSHIP);
+        userStorage.addFriend(2L, 1L, FRIENDSHIP);
+        userStorage.addFriend(1L, 3L, SUBSCRIPTION);
+        userStorage.addFriend(3L, 1L, APPLICATION);
+        userStorage.addFriend(2L, 3L, SUBSCRIPTION);
+        userStorage.addFriend(3L, 2L, APPLICATION);
+
+        dbFilmStorage.reconcileLikesCount();
+    }
+
+    @AfterEach
+    public void ternDown() {
+        filmStorage.removeAllFilm();
+        userStorage.removeAllUser();
+    }
+
+    @Test
+    public void testGetFilmByIdQueryCount() {
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        final Film film = filmStorage.getFilmById(1L);
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isEqualTo(3);
+
+        assertThat(film.getMpa().getName())
+                .isEqualTo("G");
+        assertThat(film.getGenres())
+                .hasSize(1);
+        assertThat(film.getLikesCount())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void testGetAllFilmQueryCountDoesNotDependOnFilmCount() {
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        assertThat(filmStorage.getAllFilm())
+                .hasSize(5)
+                .allSatisfy(film -> assertThat(film.getMpa()).isNotNull());
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isEqualTo(3);
+    }
+
+    @Test
+    public void testGetAllFilmWithSparseFieldsSkipsRelations() {
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        assertThat(filmStorage.getAllFilm(EnumSet.of(FilmField.ID, FilmField.NAME)))
+                .hasSize(5)
+                .allSatisfy(film -> {
+                    assertThat(film.getName()).isNotNull();
+                    assertThat(film.getDescription()).isNull();
+                    assertThat(film.getMpa()).isNull();
+                    assertThat(film.getGenres()).isEmpty();
+                });
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isEqualTo(1);
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        assertThat(filmStorage.getFilmPage(0, 2, EnumSet.of(FilmField.GENRES)))
+                .hasSize(2)
+                .allSatisfy(film -> assertThat(film.getGenres()).isNotEmpty());
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void testGetFilmByIdWithSparseFieldsSkipsRelations() {
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        final Film film = filmService.getFilmById(1L, EnumSet.of(FilmField.ID, FilmField.NAME));
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isEqualTo(1);
+
+        assertThat(film.getName())
+                .isEqualTo("Film 1");
+        assertThat(film.getDescription())
+                .isNull();
+        assertThat(film.getMpa())
+                .isNull();
+        assertThat(film.getGenres())
+                .isEmpty();
+    }
+
+    @Test
+    public void testImportFilmsQueryCountDependsOnChunkCount() {
+
+        final List<Film> films = new ArrayList<>();
+
+        for (int i = 1; i <= 2_500; i++) {
+            final Film film = Film
+                    .builder()
+                    .name("Imported " + i)
+                    .description("Imported description " + i)
+                    .releaseDate(LocalDate.of(2000, 1, 1).plusDays(i))
+                    .duration(90)
+                    .mpa(Mpa.builder().id(1 + i % 5).build())
+                    .build();
+
+            film.getGenres().add(Genre.builder().id(1 + i % 6).build());
+            films.add(film);
+        }
+        films.add(Film
+                .builder()
+                .name("Imported 1")
+                .description("Imported description 1")
+                .releaseDate(LocalDate.of(2000, 1, 2))
+                .duration(90)
+                .build());
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        final FilmImportResult result = filmService.importFilms(films.iterator());
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isLessThanOrEqualTo(3 * 5 + 2);
+
+        assertThat(result.getCreated())
+                .isEqualTo(2_500);
+        assertThat(result.getDuplicates())
+                .isEqualTo(1);
+        assertThat(filmStorage.getFilmById(result.getRecords().get(2_499).getId()))
+                .satisfies(film -> {
+                    assertThat(film.getName()).isEqualTo("Imported 2500");
+                    assertThat(film.getMpa().getId()).isEqualTo(1);
+                    assertThat(film.getGenres()).extracting(Genre::getId).containsExactly(5);
+                });
+
+        filmService.removeAllFilm();
+    }
+
+    @Test
+    public void testImportEdgesQueryCountDependsOnChunkCount() {
+
+        final List<User> users = new ArrayList<>();
+
+        for (int i = 4; i <= 60; i++) {
+            users.add(userStorage.createUser(
+                    User
+                            .builder()
+                            .email("user" + i + "@mail.ru")
+                            .login("user" + i)
+                            .birthday(LocalDate.of(1980, 1, 1))
+                            .build()));
+        }
+
+        final long[] filmIds = filmStorage.getAllFilmIds().toLongArray();
+        final List<FilmLikeEdge> likes = new ArrayList<>();
+        final List<FriendshipEdge> friendships = new ArrayList<>();
+
+        for (User user : users) {
+            for (long filmId : filmIds) {
+                likes.add(FilmLikeEdge.builder().filmId(filmId).userId(user.getId()).build());
+            }
+            for (User friend : users) {
+                if (!friend.getId().equals(user.getId())) {
+                    friendships.add(FriendshipEdge.builder().userId(user.getId()).friendId(friend.getId()).status(FRIENDSHIP).build());
+                }
+            }
+        }
+        likes.add(likes.get(0));
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        final EdgeImportResult likesResult = filmService.importLikes(likes.iterator());
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isLessThanOrEqualTo(4);
+        assertThat(likesResult.getImported())
+                .isEqualTo(likes.size() - 1);
+        assertThat(likesResult.getDuplicates())
+                .isEqualTo(1);
+        assertThat(filmStorage.getFilmById(filmIds[0]).getLikesCount())
+                .isEqualTo(filmStorage.getFilmLikesCount(filmIds[0]));
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        final EdgeImportResult friendshipsResult = userService.importFriendships(friendships.iterator());
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isLessThanOrEqualTo(1 + 4);
+        assertThat(friendshipsResult.getImported())
+                .isEqualTo(friendships.size() / 2);
+        assertThat(friendshipsResult.getDuplicates())
+                .isEqualTo(friendships.size() / 2);
+        assertThat(userStorage.getUserById(users.get(0).getId()).getFriendsIdsStatus())
+                .hasSize(users.size() - 1);
+    }
+
+    @Test
+    public void testGetFilmByPopularQueryCount() {
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        assertThat(filmStorage.getFilmByPopular(3))
+                .hasSize(3)
+                .first()
+                .hasFieldOrPropertyWithValue("id", 1L);
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isEqualTo(3);
+    }
+
+    @Test
+    public void testFilmLikesAreCountedAndPagedWithoutHydration() {
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        assertThat(filmStorage.getFilmLikesCount(1L))
+                .isEqualTo(2);
+        assertThat(filmStorage.getFilmLikePage(1L, 0, 1))
+                .containsExactly(1L);
+        assertThat(filmStorage.getFilmLikePage(1L, 1L, 10))
+                .containsExactly(2L);
+        assertThat(filmStorage.getFilmLikes(List.of(1L, 2L, 3L)))
+                .containsEntry(1L, new LongHashSet(List.of(1L, 2L)))
+                .containsEntry(2L, new LongHashSet(List.of(3L)))
+                .containsEntry(3L, new LongHashSet());
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isEqualTo(4);
+    }
+
+    @Test
+    public void testLikesAreCountedInMemoryAndReconciledAsOneBatch() {
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        filmStorage.addUserLikeOnFilm(3L, 1L);
+        filmStorage.addUserLikeOnFilm(3L, 2L);
+        filmStorage.addUserLikeOnFilm(3L, 3L);
+        filmStorage.removeUserLikeOnFilm(1L, 1L);
+
+        assertThat(SQL_STATEMENT_RECORDER.getStatements())
+                .noneMatch(sql -> sql.startsWith("UPDATE"));
+        assertThat(filmStorage.getFilmLikesCount(3L))
+                .isEqualTo(3);
+        assertThat(filmStorage.getFilmById(1L).getLikesCount())
+                .isEqualTo(1);
+        assertThat(storedLikesCount(3L))
+                .isZero();
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        dbFilmStorage.reconcileLikesCount();
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isEqualTo(1);
+        assertThat(storedLikesCount(3L))
+                .isEqualTo(3);
+        assertThat(storedLikesCount(1L))
+                .isEqualTo(1);
+        assertThat(filmStorage.getFilmByPopular(2))
+                .extracting(Film::getId)
+                .containsExactly(3L, 1L);
+    }
+
+    @Test
+    public void testGetUserByIdQueryCount() {
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        final User user = userStorage.getUserById(1L);
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isEqualTo(2);
+
+        assertThat(user.getFriendsIdsStatus())
+                .containsEntry(2L, FRIENDSHIP)
+                .containsEntry(3L, SUBSCRIPTION);
+    }
+
+    @Test
+    public void testGetAllUserQueryCountDoesNotDependOnUserCount() {
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        assertThat(userStorage.getAllUser())
+                .hasSize(3)
+                .allSatisfy(user -> assertThat(user.getFriendsIdsStatus()).hasSize(2));
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void testGetAllUserWithSparseFieldsSkipsFriendship() {
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        assertThat(userStorage.getAllUser(EnumSet.of(UserField.LOGIN)))
+                .hasSize(3)
+                .allSatisfy(user -> {
+                    assertThat(user.getLogin()).isNotNull();
+                    assertThat(user.getEmail()).isNull();
+                    assertThat(user.getFriendsIdsStatus()).isEmpty();
+                });
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void testGetUserByIdWithSparseFieldsSkipsFriendship() {
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        final User user = userService.getUserById(1L, EnumSet.of(UserField.LOGIN));
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isEqualTo(1);
+
+        assertThat(user.getLogin())
+                .isEqualTo("user1");
+        assertThat(user.getEmail())
+                .isNull();
+        assertThat(user.getFriendsIdsStatus())
+                .isEmpty();
+    }
+
+    @Test
+    public void testGetUsersByIdsQueryCountDoesNotDependOnUserCount() {
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        assertThat(userStorage.getUsersByIds(List.of(3L, 99L, 1L)))
+                .extracting(User::getId)
+                .containsExactly(3L, 1L);
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isEqualTo(2);
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        assertThat(userStorage.getUsersByIds(List.of(1L, 2L, 3L)))
+                .hasSize(3)
+                .allSatisfy(user -> assertThat(user.getFriendsIdsStatus()).hasSize(2));
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void testGetFriendsQueryCount() {
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        assertThat(userStorage.getAllFriendsByUserId(1L))
+                .hasSize(2);
+
+        assertThat(userStorage.getCommonFriendsByUser(1L, 2L))
+                .hasSize(1)
+                .first()
+                .hasFieldOrPropertyWithValue("id", 3L);
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isEqualTo(4);
+    }
+
+
+    @Test
+    public void testGetFilmByIdIsCachedUntilChanged() {
+
+        filmStorage.getFilmById(1L).getGenres().clear();
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        filmStorage.checkFilmById(1L);
+
+        assertThat(filmStorage.getFilmById(1L).getGenres())
+                .hasSize(1);
+        assertThat(filmStorage.getFilmsByIds(List.of(2L, 1L)))
+                .extracting(Film::getId)
+                .containsExactly(2L, 1L);
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isEqualTo(3);
+
+        filmStorage.addUserLikeOnFilm(1L, 3L);
+
+        assertThat(filmStorage.getFilmById(1L).getLikesCount())
+                .isEqualTo(3);
+
+        genreStorage.addGenreOnFilm(2, 1L);
+
+        assertThat(filmStorage.getFilmById(1L).getGenres())
+                .hasSize(2);
+
+        userStorage.removeUserById(2L);
+
+        assertThat(filmStorage.getFilmById(1L).getLikesCount())
+                .isEqualTo(2);
+
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "films").tag("result", "hit").functionCounter().count())
+                .isPositive();
+    }
+
+    @Test
+    public void testGetUserByIdIsCachedUntilChanged() {
+
+        userStorage.getUserById(1L);
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        userStorage.checkUserById(1L);
+        userStorage.getUserById(1L);
+
+        assertThat(SQL_STATEMENT_RECORDER.count())
+                .isZero();
+
+        userStorage.removeFriendship(1L, 3L);
+
+        assertThat(userStorage.getUserById(1L).getFriendsIdsStatus())
+                .containsOnlyKeys(2L);
+
+        userStorage.removeUserById(2L);
+
+        assertThat(userStorage.getUserById(1L).getFriendsIdsStatus())
+                .isEmpty();
+    }
+
+
+    private long storedLikesCount(long filmId) {
+        return jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE id = ?", Long.class, filmId);
+    }
+
+    @TestConfiguration
+    static class QueryCountConfiguration {
+
+        @Bean
+        public static BeanPostProcessor queryCountingDataSourcePostProcessor() {
+            return SQL_STATEMENT_RECORDER.dataSourcePostProcessor();
+        }
+    }
+}
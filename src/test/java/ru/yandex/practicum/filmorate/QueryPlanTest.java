@@ -0,0 +1,297 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.ConflictException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmLikeEdge;
+import ru.yandex.practicum.filmorate.model.FilmPatch;
+import ru.yandex.practicum.filmorate.model.FriendshipEdge;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.film.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static ru.yandex.practicum.filmorate.model.Status.*;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class QueryPlanTest {
+    private static final SqlStatementRecorder SQL_STATEMENT_RECORDER = new SqlStatementRecorder();
+    private static final Set<String> FULL_TABLE_STATEMENTS = Set.of(
+            "SELECT * FROM films",
+            "SELECT * FROM films ORDER BY id",
+            "SELECT id, likes_count FROM films",
+            "SELECT id FROM films",
+            "SELECT id FROM users",
+            "SELECT * FROM users",
+            "SELECT * FROM users ORDER BY id",
+            "SELECT * FROM genres",
+            "SELECT * FROM mpas",
+            "DELETE FROM user_film_like",
+            "DELETE FROM film_genre",
+            "DELETE FROM film_mpa",
+            "DELETE FROM films",
+            "DELETE FROM friendship",
+            "DELETE FROM users",
+            "DELETE FROM genres",
+            "UPDATE films SET likes_count = 0",
+            "UPDATE films SET likes_count = (SELECT COUNT(*) FROM user_film_like WHERE film_id = films.id) "
+                    + "WHERE likes_count <> (SELECT COUNT(*) FROM user_film_like WHERE film_id = films.id)");
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+
+    @Test
+    public void testStorageQueriesDoNotScanTables() {
+
+        SQL_STATEMENT_RECORDER.clear();
+
+        exerciseUserStorage();
+        exerciseFilmStorage();
+        exerciseGenreStorage();
+
+        filmStorage.removeAllFilm();
+        userStorage.removeAllUser();
+
+        final Set<String> statements = new LinkedHashSet<>();
+
+        SQL_STATEMENT_RECORDER.getStatements()
+                .stream()
+                .map(sql -> sql.trim().replaceAll("\\s+", " "))
+                .filter(sql -> sql.matches("(?i)^(SELECT|UPDATE|DELETE|MERGE) .*"))
+                .forEach(statements::add);
+
+        assertThat(statements)
+                .hasSizeGreaterThan(40);
+
+        final Map<String, String> tableScans = new LinkedHashMap<>();
+
+        for (String sql : statements) {
+            final String plan = explain(sql);
+
+            if (plan.contains("tableScan") && !FULL_TABLE_STATEMENTS.contains(sql)) {
+                tableScans.put(sql, plan);
+            }
+        }
+
+        assertThat(tableScans)
+                .isEmpty();
+    }
+
+    private void exerciseUserStorage() {
+
+        for (int i = 1; i <= 3; i++) {
+            userStorage.createUser(
+                    User
+                            .builder()
+                            .name("User " + i)
+                            .email("user" + i + "@mail.ru")
+                            .login("user" + i)
+                            .birthday(LocalDate.of(1980, 1, i))
+                            .build());
+        }
+
+        final User user = userStorage.getUserById(3L);
+
+        user.getFriendsIdsStatus().put(1L, SUBSCRIPTION);
+
+        userStorage.updateUser(user);
+        userStorage.removeFriend(3L, 1L);
+
+        userStorage.getAllUser();
+        userStorage.getUserPage(0, 10);
+        userStorage.getAllUser(EnumSet.of(UserField.LOGIN));
+        userStorage.getUsersByIds(List.of(3L, 1L));
+        userStorage.getAllUserIds();
+        userStorage.addFriendshipEdges(List.of(FriendshipEdge
+                .builder()
+                .userId(3L)
+                .friendId(1L)
+                .status(SUBSCRIPTION)
+                .build()));
+        userStorage.getUserPage(0, 10, EnumSet.of(UserField.LOGIN));
+        userStorage.streamAllUser(streamed -> {
+        });
+
+        userStorage.checkUserById(1L);
+        userStorage.checkUserLogin("free");
+        userStorage.checkUserEmail("free@mail.ru");
+        userStorage.checkUserIdOnLogin("user1", 1L);
+        userStorage.checkUserIdOnEmail("user1@mail.ru", 1L);
+
+        userStorage.addFriendship(1L, 2L);
+        userStorage.addFriendship(2L, 1L);
+        userStorage.addFriendship(1L, 3L);
+        userStorage.addFriend(2L, 3L, SUBSCRIPTION);
+        userStorage.updateStatusFriendShip(2L, 3L, SUBSCRIPTION);
+
+        userStorage.checkUserFriendById(1L, 3L, false);
+        userStorage.checkFriendByUserId(1L);
+        userStorage.checkUserByFriendId(1L);
+        userStorage.checkStatusFriendship(1L, 2L, FRIENDSHIP);
+        userStorage.checkFriendship(1L, 2L);
+
+        userStorage.getAllFriendsByUserId(1L);
+        userStorage.getFriendPageByUserId(1L, 0, 10);
+        userStorage.getCommonFriendsByUser(1L, 2L);
+
+        userStorage.removeFriendship(1L, 2L);
+        userStorage.removeFriendship(1L, 3L);
+    }
+
+    private void exerciseFilmStorage() {
+
+        for (int i = 1; i <= 2; i++) {
+            final Film film = Film
+                    .builder()
+                    .name("Film " + i)
+                    .description("Description " + i)
+                    .releaseDate(LocalDate.of(2000, 1, i))
+                    .duration(100 + i)
+                    .mpa(Mpa.builder().id(i).build())
+                    .build();
+
+            film.getGenres().add(Genre.builder().id(i).build());
+
+            filmStorage.checkFilmByNameReleaseDateDuration(film);
+            filmStorage.createFilm(film);
+        }
+
+        final Film film = filmStorage.getFilmById(1L);
+
+        film.getGenres().clear();
+        film.getGenres().add(Genre.builder().id(3).build());
+
+        filmStorage.checkFilmByNameReleaseDateDuration(film);
+        filmStorage.updateFilm(film);
+        filmStorage.patchFilm(1L,
+                FilmPatch
+                        .builder()
+                        .description("Patched")
+                        .mpa(Mpa.builder().id(4).build())
+                        .genres(Set.of(Genre.builder().id(4).build()))
+                        .build());
+
+        filmStorage.checkFilmLikeByUserId(1L, 1L, true);
+        filmStorage.addUserLikeOnFilm(1L, 1L);
+        filmStorage.addUserLikeOnFilm(1L, 2L);
+        filmStorage.removeUserLikeOnFilm(1L, 2L);
+        filmStorage.getAllFilmIds();
+        filmStorage.addUserLikesOnFilms(List.of(FilmLikeEdge
+                .builder()
+                .filmId(2L)
+                .userId(1L)
+                .build()));
+        filmStorage.removeUserLikesOnFilms(List.of(FilmLikeEdge
+                .builder()
+                .filmId(2L)
+                .userId(1L)
+                .build()));
+
+        filmStorage.getAllFilm();
+        filmStorage.getFilmPage(0, 10);
+        filmStorage.getAllFilm(EnumSet.of(FilmField.NAME, FilmField.GENRES));
+        filmStorage.getFilmsByNamesOrDescriptions(List.of("Film 1"), List.of("Description 2"));
+        filmStorage.getFilmPage(0, 10, EnumSet.of(FilmField.NAME, FilmField.GENRES));
+        filmStorage.streamAllFilm(streamed -> {
+        });
+        filmStorage.getFilmByPopular(10);
+        filmStorage.getFilmsByIds(List.of(2L, 1L));
+        filmStorage.getAllFilmLikesCount();
+        filmStorage.getFilmLikesCount(1L);
+        filmStorage.getFilmLikePage(1L, 0, 10);
+        filmStorage.getFilmLikes(List.of(1L, 2L));
+        filmStorage.checkFilmById(1L);
+        filmStorage.recalculateLikesCount();
+
+        userStorage.removeUserById(3L);
+
+        filmStorage.removeFilmById(2L);
+    }
+
+    private void exerciseGenreStorage() {
+
+        mpaStorage.getMpaList();
+        mpaStorage.getMpaById(1);
+
+        final Genre genre = genreStorage.createGenre(Genre.builder().name("Вестерн").build());
+
+        genreStorage.checkGenre(Genre.builder().name("Нуар").build());
+        genreStorage.checkGenre(genre);
+        genreStorage.updateGenre(genre);
+        genreStorage.getGenreList();
+        genreStorage.getGenreById(genre.getId());
+        genreStorage.checkGenreById(genre.getId());
+
+        assertThat(
+                catchThrowable(() -> genreStorage.checkGenreOnFilm(genre.getId(), 1L, false)))
+                .isInstanceOf(NotFoundException.class);
+
+        genreStorage.addGenreOnFilm(1, 1L);
+
+        assertThat(
+                catchThrowable(() -> genreStorage.checkGenreOnFilm(1, 1L, true)))
+                .isInstanceOf(ConflictException.class);
+
+        genreStorage.removeGenreOnFilm(1, 1L);
+        genreStorage.removeGenreById(genre.getId());
+    }
+
+    private String explain(String sql) {
+
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+
+                for (int i = 1; i <= statement.getParameterMetaData().getParameterCount(); i++) {
+                    statement.setObject(i, null);
+                }
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    final StringBuilder plan = new StringBuilder();
+
+                    while (resultSet.next()) {
+                        plan.append(resultSet.getString(1));
+                    }
+                    return plan.toString();
+                }
+            }
+        });
+    }
+
+
+    @TestConfiguration
+    static class QueryPlanConfiguration {
+
+        @Bean
+        public static BeanPostProcessor queryPlanDataSourcePostProcessor() {
+            return SQL_STATEMENT_RECORDER.dataSourcePostProcessor();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class SqlStatementRecorder {
+    private static final Set<String> STATEMENT_SQL_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "addBatch");
+    private final List<String> statements = new CopyOnWriteArrayList<>();
+
+
+    public BeanPostProcessor dataSourcePostProcessor() {
+
+        return new BeanPostProcessor() {
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+
+                if (bean instanceof DataSource) {
+                    return recordingProxy(DataSource.class, (DataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+
+    public void clear() {
+        statements.clear();
+    }
+
+    public int count() {
+        return statements.size();
+    }
+
+    public List<String> getStatements() {
+        return new ArrayList<>(statements);
+    }
+
+    private <T> T recordingProxy(Class<T> type, T target) {
+
+        return type.cast(Proxy.newProxyInstance(
+                SqlStatementRecorder.class.getClassLoader(),
+                new Class<?>[]{type},
+                (proxy, method, args) -> {
+
+                    if (type == Connection.class
+                            && method.getName().equals("prepareStatement")) {
+                        statements.add((String) args[0]);
+                    }
+
+                    if (type == Statement.class
+                            && STATEMENT_SQL_METHODS.contains(method.getName())
+                            && args != null
+                            && args[0] instanceof String) {
+                        statements.add((String) args[0]);
+                    }
+
+                    try {
+                        final Object result = method.invoke(target, args);
+
+                        if (result instanceof Connection) {
+                            return recordingProxy(Connection.class, (Connection) result);
+                        }
+                        if (result instanceof Statement && !(result instanceof PreparedStatement)) {
+                            return recordingProxy(Statement.class, (Statement) result);
+                        }
+                        return result;
+
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                }));
+    }
+}
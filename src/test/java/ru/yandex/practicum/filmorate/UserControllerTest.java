@@ -18,6 +18,8 @@ import ru.yandex.practicum.filmorate.service.UserService;
 import java.time.LocalDate;
 import java.util.List;
 
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.*;
@@ -132,6 +134,113 @@ public class UserControllerTest {
         assertEquals("[]", response);
     }
 
+    @Test
+    @SneakyThrows
+    void getUsersByIdsTest() {
+        final User first = userService.createUser(user1);
+        final User second = userService.createUser(user2);
+
+        mockMvc.perform(get("/users")
+                        .param("ids", String.valueOf(second.getId()))
+                        .param("ids", "9999")
+                        .param("ids", String.valueOf(first.getId())))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(header()
+                        .string("X-Missing-Ids", "9999"))
+                .andExpect(jsonPath("$[*].login")
+                        .value(contains(user2.getLogin(), user1.getLogin())));
+    }
+
+    @Test
+    @SneakyThrows
+    void bulkImportFriendshipsTest() {
+        final long first = userService.createUser(user1).getId();
+        final long second = userService.createUser(user2).getId();
+        final long third = userService.createUser(user3).getId();
+        userService.addFriend(first, third);
+
+        mockMvc.perform(post("/users/friends/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"userId\":" + first + ",\"friendId\":" + second + ",\"status\":\"FRIENDSHIP\"}\n"
+                                + "{\"userId\":" + second + ",\"friendId\":" + first + ",\"status\":\"FRIENDSHIP\"}\n"
+                                + "{\"userId\":" + first + ",\"friendId\":" + second + ",\"status\":\"FRIENDSHIP\"}\n"
+                                + "{\"userId\":" + first + ",\"friendId\":" + third + ",\"status\":\"SUBSCRIPTION\"}\n"
+                                + "{\"userId\":" + first + ",\"friendId\":" + first + ",\"status\":\"FRIENDSHIP\"}\n"
+                                + "{\"userId\":" + first + ",\"friendId\":9999,\"status\":\"FRIENDSHIP\"}\n"
+                                + "{\"userId\":" + third + ",\"friendId\":" + second + "}\n"
+                                + "{\"userId\":" + second + ",\"friendId\":" + first + ",\"status\":\"SUBSCRIPTION\"}\n"
+                                + "{\"userId\":" + third + ",\"friendId\":" + second + ",\"status\":\"SUBSCRIPTION\"}\n"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$.imported")
+                        .value(2))
+                .andExpect(jsonPath("$.duplicates")
+                        .value(3))
+                .andExpect(jsonPath("$.invalid")
+                        .value(4))
+                .andExpect(jsonPath("$.errors", hasSize(4)))
+                .andExpect(jsonPath("$.errors[3]")
+                        .value(containsString("противоречит")));
+
+        mockMvc.perform(get("/users/{userId}", first))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$.friendsIdsStatus." + second)
+                        .value("FRIENDSHIP"))
+                .andExpect(jsonPath("$.friendsIdsStatus." + third)
+                        .value("SUBSCRIPTION"));
+
+        mockMvc.perform(get("/users/{userId}", second))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$.friendsIdsStatus." + first)
+                        .value("FRIENDSHIP"))
+                .andExpect(jsonPath("$.friendsIdsStatus." + third)
+                        .value("APPLICATION"));
+
+        mockMvc.perform(get("/users/{userId}/friends", second))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$[*].id")
+                        .value(contains((int) first)));
+    }
+
+    @Test
+    @SneakyThrows
+    void getUsersWithSparseFieldsTest() {
+        userService.createUser(user1);
+        userService.createUser(user2);
+
+        mockMvc.perform(get("/users")
+                        .param("fields", "id,login"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$[*]", hasSize(2)))
+                .andExpect(jsonPath("$[1].login")
+                        .value(user2.getLogin()))
+                .andExpect(jsonPath("$[1].email")
+                        .doesNotExist())
+                .andExpect(jsonPath("$[1].friendsIdsStatus")
+                        .doesNotExist());
+
+        mockMvc.perform(get("/users")
+                        .param("fields", "email")
+                        .param("limit", "1"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$[*]", hasSize(1)))
+                .andExpect(jsonPath("$[0].email")
+                        .value(user1.getEmail()))
+                .andExpect(jsonPath("$[0].id")
+                        .doesNotExist());
+
+        mockMvc.perform(get("/users")
+                        .param("fields", "password"))
+                .andExpect(status()
+                        .isBadRequest());
+    }
+
     @Test
     @SneakyThrows
     void postUserSetNameTest() {
@@ -662,6 +771,35 @@ public class UserControllerTest {
         assertEquals(3, userList.get(1).getId());
 
 
+        final String nextCursor = mockMvc.perform(get("/users/1/friends")
+                        .param("limit", "1"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$[*]", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value("2"))
+                .andReturn()
+                .getResponse()
+                .getHeader("X-Next-Cursor");
+
+        mockMvc.perform(get("/users/1/friends")
+                        .param("after", nextCursor)
+                        .param("limit", "1"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$[*]", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value("3"));
+
+        mockMvc.perform(get("/users")
+                        .param("after", nextCursor)
+                        .param("limit", "10"))
+                .andExpect(status()
+                        .isOk())
+                .andExpect(jsonPath("$[*]", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value("3"))
+                .andExpect(header()
+                        .doesNotExist("X-Next-Cursor"));
+
+
         response = mockMvc.perform(get("/users/1/friends/common/2"))
                 .andExpect(status()
                         .isOk())
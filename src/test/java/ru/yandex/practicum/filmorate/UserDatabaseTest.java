@@ -8,12 +8,15 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.context.SpringBootTest;
 import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Status;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
@@ -277,6 +280,70 @@ class UserDatabaseTest {
                 .isTrue();
     }
 
+    @Test
+    public void testConcurrentMutualFriendship() throws Exception {
+
+        for (int i = 1; i <= 2; i++) {
+            userStorage.createUser(
+                    User
+                            .builder()
+                            .name("User " + i)
+                            .email("user" + i + "@mail.ru")
+                            .login("user" + i)
+                            .birthday(LocalDate.of(1980, 1, i))
+                            .build());
+        }
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+        try {
+            for (int i = 0; i < 20; i++) {
+
+                final CountDownLatch start = new CountDownLatch(1);
+
+                final Future<Status> first = executorService.submit(() -> {
+                    start.await();
+                    return userStorage.addFriendship(1, 2);
+                });
+                final Future<Status> second = executorService.submit(() -> {
+                    start.await();
+                    return userStorage.addFriendship(2, 1);
+                });
+
+                start.countDown();
+
+                assertThat(List.of(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS)))
+                        .containsExactlyInAnyOrder(SUBSCRIPTION, FRIENDSHIP);
+
+                assertThat(userStorage.getUserById(1).getFriendsIdsStatus())
+                        .containsExactly(entry(2L, FRIENDSHIP));
+                assertThat(userStorage.getUserById(2).getFriendsIdsStatus())
+                        .containsExactly(entry(1L, FRIENDSHIP));
+
+                assertThat(userStorage.removeFriendship(1, 2))
+                        .isEqualTo(FRIENDSHIP);
+                assertThat(userStorage.removeFriendship(2, 1))
+                        .isEqualTo(SUBSCRIPTION);
+
+                assertThat(userStorage.getAllFriendsByUserId(1))
+                        .isEmpty();
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
 
+        assertThatThrownBy(
+                () -> userStorage.removeFriendship(1, 2))
+                .isInstanceOf(
+                        NotFoundException.class)
+                .hasMessageContaining(
+                        "У пользователя с id => 1 нет друзей");
 
+        assertThatThrownBy(
+                () -> userStorage.addFriendship(1, 9999))
+                .isInstanceOf(
+                        NotFoundException.class)
+                .hasMessageContaining(
+                        "Такой пользователь c id => 9999 не существует");
+    }
 }
\ No newline at end of file
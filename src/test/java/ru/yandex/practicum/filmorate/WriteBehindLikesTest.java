@@ -0,0 +1,279 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.ConflictException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.buffer.LikeJournal;
+import ru.yandex.practicum.filmorate.storage.film.buffer.WriteBehindFilmStorageImpl;
+import ru.yandex.practicum.filmorate.storage.film.dao.DbFilmStorageImpl;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest(properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.max-pending=20",
+        "filmorate.likes.write-behind.flush-interval-ms=3600000",
+        "filmorate.likes.write-behind.journal-path=" + WriteBehindLikesTest.JOURNAL_PATH})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class WriteBehindLikesTest {
+    static final String JOURNAL_PATH = "target/write-behind-test/likes.journal";
+    private final FilmService filmService;
+    private final UserService userService;
+    private final FilmStorage filmStorage;
+    private final WriteBehindFilmStorageImpl writeBehindFilmStorage;
+    private final LikeJournal likeJournal;
+    private final DbFilmStorageImpl dbFilmStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final List<Long> userIds = new ArrayList<>();
+    private long filmId;
+
+
+    @BeforeEach
+    public void setUp() {
+
+        for (int i = 1; i <= 30; i++) {
+            userIds.add(userService.createUser(User
+                    .builder()
+                    .login("buffered" + i)
+                    .email("buffered" + i + "@mail.ru")
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build()).getId());
+        }
+
+        filmId = filmService.createFilm(Film
+                .builder()
+                .name("Premiere")
+                .description("Premiere description")
+                .releaseDate(LocalDate.of(2020, 1, 1))
+                .duration(120)
+                .build()).getId();
+    }
+
+    @AfterEach
+    public void ternDown() {
+        filmService.removeAllFilm();
+        userService.removeAllUser();
+    }
+
+    @Test
+    public void testPendingLikesAreCoalescedAndReadable() throws Exception {
+
+        filmService.addUserLikeByFilmId(filmId, userIds.get(0));
+        filmService.addUserLikeByFilmId(filmId, userIds.get(1));
+        filmService.addUserLikeByFilmId(filmId, userIds.get(2));
+        filmService.removeUserLikeByFilmId(filmId, userIds.get(1));
+
+        assertThat(storedLikes())
+                .isZero();
+        assertThat(Files.readAllLines(Paths.get(JOURNAL_PATH)))
+                .hasSize(4);
+
+        assertThat(filmService.getFilmById(filmId).getLikesCount())
+                .isEqualTo(2);
+        assertThat(filmStorage.getFilmLikePage(filmId, 0, 10))
+                .containsExactly(userIds.get(0), userIds.get(2));
+        assertThat(filmStorage.getFilmLikes(List.of(filmId)).get(filmId))
+                .containsExactlyInAnyOrder(userIds.get(0), userIds.get(2));
+        assertThat(filmStorage.getFilmByPopular(1))
+                .extracting(Film::getLikesCount)
+                .containsExactly(2L);
+        assertThatThrownBy(() -> filmService.addUserLikeByFilmId(filmId, userIds.get(0)))
+                .isInstanceOf(ConflictException.class);
+        assertThatThrownBy(() -> filmService.removeUserLikeByFilmId(filmId, userIds.get(1)))
+                .isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> filmService.addUserLikeByFilmId(filmId, 9999))
+                .isInstanceOf(NotFoundException.class);
+
+        assertThat(storedLikes())
+                .isEqualTo(2);
+        assertThat(Files.readAllLines(Paths.get(JOURNAL_PATH)))
+                .isEmpty();
+
+        filmService.removeUserLikeByFilmId(filmId, userIds.get(0));
+        filmService.addUserLikeByFilmId(filmId, userIds.get(0));
+        writeBehindFilmStorage.flushPendingLikes();
+
+        assertThat(storedLikes())
+                .isEqualTo(2);
+        assertThat(filmService.getFilmById(filmId).getLikesCount())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void testPendingLikesAreFlushedWhenBufferIsFull() {
+
+        for (int i = 0; i < 19; i++) {
+            filmService.addUserLikeByFilmId(filmId, userIds.get(i));
+        }
+
+        assertThat(storedLikes())
+                .isZero();
+
+        filmService.addUserLikeByFilmId(filmId, userIds.get(19));
+
+        assertThat(storedLikes())
+                .isEqualTo(20);
+
+        dbFilmStorage.reconcileLikesCount();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE id = ?", Long.class, filmId))
+                .isEqualTo(20);
+    }
+
+    @Test
+    public void testJournalIsReplayedOnStartup() throws Exception {
+
+        likeJournal.append(true, filmId, userIds.get(0));
+        likeJournal.append(true, filmId, userIds.get(1));
+        likeJournal.append(false, filmId, userIds.get(0));
+
+        writeBehindFilmStorage.replayJournal();
+
+        assertThat(storedLikes())
+                .isEqualTo(1);
+        assertThat(filmStorage.getFilmLikePage(filmId, 0, 10))
+                .containsExactly(userIds.get(1));
+        assertThat(Files.readAllLines(Paths.get(JOURNAL_PATH)))
+                .isEmpty();
+    }
+
+    @Test
+    public void testJournalEntriesForDeletedFilmDoNotBlockLaterFlushes() throws Exception {
+
+        final long deletedFilmId = filmService.createFilm(Film
+                .builder()
+                .name("Cancelled")
+                .description("Cancelled description")
+                .releaseDate(LocalDate.of(2020, 1, 1))
+                .duration(90)
+                .build()).getId();
+
+        likeJournal.append(true, deletedFilmId, userIds.get(0));
+        likeJournal.append(true, filmId, userIds.get(1));
+        dbFilmStorage.removeFilmById(deletedFilmId);
+
+        writeBehindFilmStorage.replayJournal();
+
+        assertThat(storedLikes())
+                .isEqualTo(1);
+        assertThat(Files.readAllLines(Paths.get(JOURNAL_PATH)))
+                .isEmpty();
+
+        filmService.addUserLikeByFilmId(filmId, userIds.get(2));
+        writeBehindFilmStorage.flushPendingLikes();
+
+        assertThat(storedLikes())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void testFailingEdgeIsDroppedAndOthersAreFlushed() throws Exception {
+
+        final long deletedFilmId = filmService.createFilm(Film
+                .builder()
+                .name("Cancelled")
+                .description("Cancelled description")
+                .releaseDate(LocalDate.of(2020, 1, 1))
+                .duration(90)
+                .build()).getId();
+
+        filmService.addUserLikeByFilmId(deletedFilmId, userIds.get(0));
+        filmService.addUserLikeByFilmId(filmId, userIds.get(0));
+        filmService.addUserLikeByFilmId(filmId, userIds.get(1));
+        dbFilmStorage.removeFilmById(deletedFilmId);
+
+        writeBehindFilmStorage.flushPendingLikes();
+
+        assertThat(storedLikes())
+                .isEqualTo(2);
+        assertThat(Files.readAllLines(Paths.get(JOURNAL_PATH)))
+                .isEmpty();
+
+        filmService.addUserLikeByFilmId(filmId, userIds.get(2));
+        writeBehindFilmStorage.flushPendingLikes();
+
+        assertThat(storedLikes())
+                .isEqualTo(3);
+        assertThat(filmService.getFilmById(filmId).getLikesCount())
+                .isEqualTo(3);
+    }
+
+    @Test
+    public void testLikesSurviveTemporaryStorageFailure() throws Exception {
+
+        filmService.addUserLikeByFilmId(filmId, userIds.get(0));
+        filmService.addUserLikeByFilmId(filmId, userIds.get(1));
+
+        jdbcTemplate.execute("ALTER TABLE user_film_like RENAME TO user_film_like_offline");
+        try {
+            writeBehindFilmStorage.flushPendingLikes();
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE user_film_like_offline RENAME TO user_film_like");
+        }
+
+        assertThat(storedLikes())
+                .isZero();
+        assertThat(Files.readAllLines(Paths.get(JOURNAL_PATH)))
+                .hasSize(2);
+        assertThat(filmService.getFilmById(filmId).getLikesCount())
+                .isEqualTo(2);
+
+        writeBehindFilmStorage.flushPendingLikes();
+
+        assertThat(storedLikes())
+                .isEqualTo(2);
+        assertThat(Files.readAllLines(Paths.get(JOURNAL_PATH)))
+                .isEmpty();
+    }
+
+    @Test
+    public void testPopularFilmsReflectBufferedLikes() {
+
+        final long rivalFilmId = filmService.createFilm(Film
+                .builder()
+                .name("Rival")
+                .description("Rival description")
+                .releaseDate(LocalDate.of(2020, 1, 1))
+                .duration(90)
+                .build()).getId();
+
+        filmService.addUserLikeByFilmId(rivalFilmId, userIds.get(0));
+        writeBehindFilmStorage.flushPendingLikes();
+
+        assertThat(filmService.getFilmByPopular(2))
+                .extracting(Film::getId)
+                .containsExactly(rivalFilmId, filmId);
+
+        filmService.addUserLikeByFilmId(filmId, userIds.get(1));
+        filmService.addUserLikeByFilmId(filmId, userIds.get(2));
+
+        assertThat(filmService.getFilmByPopular(2))
+                .extracting(Film::getId, Film::getLikesCount)
+                .containsExactly(tuple(filmId, 2L), tuple(rivalFilmId, 1L));
+    }
+
+    private long storedLikes() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_film_like WHERE film_id = ?", Long.class, filmId);
+    }
+}